@@ -0,0 +1,329 @@
+package com.AdbService;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 自适应超时策略：按命令签名（前两个词，如 "dumpsys package"）统计历史耗时，
+ * 用对数分桶直方图近似高分位数，超时 = 高分位耗时 × 安全系数，并限制在下限/上限之间。
+ * 样本不足时回退到全局默认超时；统计数据持久化到文件，重启后继续生效。
+ * 连续超时时按倍数放宽该签名的超时（至上限为止），设备或命令变慢后不会一直按旧的分位数被杀掉；
+ * 成功一次即恢复按直方图计算。
+ * 同一统计文件在进程内只对应一个实例（{@link #forFile}），多个引擎实例共用统计，不会互相覆盖文件。
+ */
+public class AdbAdaptiveTimeoutPolicy {
+    // 签名取命令前几个词
+    private static final int SIGNATURE_TOKENS = 2;
+    // 对数分桶底数：相邻桶相差 10%，分位数相对误差约 5%
+    private static final double BUCKET_GAMMA = 1.1;
+    private static final double LOG_GAMMA = Math.log(BUCKET_GAMMA);
+    // 覆盖 1ms ~ 约 30 分钟
+    private static final int BUCKET_COUNT = 160;
+    // 单个签名累计样本超过该值时计数减半，让统计逐步跟随设备最新状态
+    private static final int DECAY_THRESHOLD = 1000;
+    // 每记录若干次样本持久化一次
+    private static final int SAVE_INTERVAL = 20;
+    // 签名数量上限，防止带随机参数的命令撑爆统计表
+    private static final int MAX_SIGNATURES = 512;
+    // 每次连续超时后超时时间放大的倍数，及参与放大的最多次数（防止溢出）
+    private static final double TIMEOUT_BACKOFF_FACTOR = 2.0;
+    private static final int MAX_BACKOFF_STEPS = 16;
+
+    // 可调参数
+    private double quantile = 0.99;
+    private double safetyFactor = 3.0;
+    private long floorMillis = 1000;
+    private long ceilingMillis = 120_000;
+    private int minSamples = 5;
+
+    // 进程内按统计文件（规范路径）共享的实例
+    private static final Map<String, AdbAdaptiveTimeoutPolicy> SHARED_POLICIES = new HashMap<>();
+
+    // 持久化文件（为 null 时只在内存中统计）
+    @Nullable
+    private final File statsFile;
+    private final Map<String, LatencySketch> sketches = new HashMap<>();
+    private int unsavedRecords = 0;
+    // 串行化文件写入（save 可能从多个工作线程触发）；用显式锁，虚拟线程在文件 IO 期间不会钉住载体线程
+    private final ReentrantLock saveLock = new ReentrantLock();
+
+    /** 单个签名的耗时直方图（只含成功完成的样本），超时次数单独计数 */
+    private static class LatencySketch {
+        final int[] counts = new int[BUCKET_COUNT];
+        int total = 0;
+        int timeouts = 0;
+        // 最近一次成功之后连续超时的次数，决定超时放宽的倍数
+        int consecutiveTimeouts = 0;
+
+        void add(long millis) {
+            consecutiveTimeouts = 0;
+            counts[bucketOf(millis)]++;
+            total++;
+            if (total > DECAY_THRESHOLD) {
+                total = 0;
+                for (int i = 0; i < BUCKET_COUNT; i++) {
+                    counts[i] >>= 1;
+                    total += counts[i];
+                }
+                timeouts >>= 1;
+            }
+        }
+
+        long quantileMillis(double q) {
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) {
+                    // 取桶上界，宁可略大也不误杀
+                    return (long) Math.ceil(Math.pow(BUCKET_GAMMA, i + 1));
+                }
+            }
+            return (long) Math.ceil(Math.pow(BUCKET_GAMMA, BUCKET_COUNT));
+        }
+    }
+
+    public AdbAdaptiveTimeoutPolicy(@Nullable File statsFile) {
+        this.statsFile = statsFile;
+        load();
+    }
+
+    /**
+     * 获取统计文件对应的共享实例：同一数据目录下的多个引擎实例应通过这里获取，
+     * 否则各自持有一份内存统计，落盘时后写的会覆盖先写的
+     */
+    @NonNull
+    public static AdbAdaptiveTimeoutPolicy forFile(@NonNull File statsFile) {
+        String key;
+        try {
+            key = statsFile.getCanonicalPath();
+        } catch (IOException e) {
+            key = statsFile.getAbsolutePath();
+        }
+        synchronized (SHARED_POLICIES) {
+            AdbAdaptiveTimeoutPolicy policy = SHARED_POLICIES.get(key);
+            if (policy == null) {
+                policy = new AdbAdaptiveTimeoutPolicy(statsFile);
+                SHARED_POLICIES.put(key, policy);
+            }
+            return policy;
+        }
+    }
+
+    // ============== 参数配置 ==============
+    public synchronized void setQuantile(double quantile) {
+        if (quantile > 0 && quantile < 1) {
+            this.quantile = quantile;
+        }
+    }
+
+    public synchronized void setSafetyFactor(double safetyFactor) {
+        if (safetyFactor >= 1) {
+            this.safetyFactor = safetyFactor;
+        }
+    }
+
+    public synchronized void setBounds(long floorMillis, long ceilingMillis) {
+        if (floorMillis > 0 && ceilingMillis >= floorMillis) {
+            this.floorMillis = floorMillis;
+            this.ceilingMillis = ceilingMillis;
+        }
+    }
+
+    public synchronized void setMinSamples(int minSamples) {
+        if (minSamples > 0) {
+            this.minSamples = minSamples;
+        }
+    }
+
+    // ============== 核心：计算超时 / 记录样本 ==============
+    /**
+     * 计算命令的超时时间；样本不足时以 defaultMillis 为基准。
+     * 连续超时 n 次后基准放大 TIMEOUT_BACKOFF_FACTOR^n 倍，最多放大到上限（默认值本身更大时以默认值为准）
+     */
+    public synchronized long getTimeoutMillis(@NonNull String command, long defaultMillis) {
+        LatencySketch sketch = sketches.get(signatureOf(command));
+        if (sketch == null) {
+            return defaultMillis;
+        }
+        long timeout;
+        if (sketch.total < minSamples) {
+            timeout = defaultMillis;
+        } else {
+            timeout = (long) (sketch.quantileMillis(quantile) * safetyFactor);
+            timeout = Math.max(floorMillis, Math.min(ceilingMillis, timeout));
+        }
+        if (sketch.consecutiveTimeouts > 0) {
+            int steps = Math.min(MAX_BACKOFF_STEPS, sketch.consecutiveTimeouts);
+            long widened = (long) (timeout * Math.pow(TIMEOUT_BACKOFF_FACTOR, steps));
+            timeout = Math.max(timeout, Math.min(Math.max(ceilingMillis, defaultMillis), widened));
+        }
+        return timeout;
+    }
+
+    /**
+     * 记录一次成功完成的耗时
+     */
+    public void recordLatency(@NonNull String command, long millis) {
+        record(command, millis, false);
+    }
+
+    /**
+     * 记录一次超时：不进入耗时直方图（真实耗时未知），只累计次数并让下一次超时按倍数放宽；
+     * 反复挂起的命令最多放宽到上限，不会无限变慢
+     */
+    public void recordTimeout(@NonNull String command) {
+        record(command, 0, true);
+    }
+
+    /**
+     * 该命令签名累计的超时次数（随样本衰减）
+     */
+    public synchronized int getTimeoutCount(@NonNull String command) {
+        LatencySketch sketch = sketches.get(signatureOf(command));
+        return sketch == null ? 0 : sketch.timeouts;
+    }
+
+    private void record(@NonNull String command, long millis, boolean isTimeout) {
+        boolean shouldSave;
+        synchronized (this) {
+            String signature = signatureOf(command);
+            LatencySketch sketch = sketches.get(signature);
+            if (sketch == null) {
+                if (sketches.size() >= MAX_SIGNATURES) {
+                    return;
+                }
+                sketch = new LatencySketch();
+                sketches.put(signature, sketch);
+            }
+            if (isTimeout) {
+                sketch.timeouts++;
+                sketch.consecutiveTimeouts++;
+            } else {
+                sketch.add(millis);
+            }
+            shouldSave = ++unsavedRecords >= SAVE_INTERVAL;
+        }
+        if (shouldSave) {
+            save();
+        }
+    }
+
+    /**
+     * 命令签名：取前 SIGNATURE_TOKENS 个词，统一小写
+     */
+    @NonNull
+    static String signatureOf(@NonNull String command) {
+        String[] tokens = command.trim().split("\\s+", SIGNATURE_TOKENS + 1);
+        StringBuilder signature = new StringBuilder();
+        for (int i = 0; i < Math.min(SIGNATURE_TOKENS, tokens.length); i++) {
+            if (i > 0) signature.append(' ');
+            signature.append(tokens[i]);
+        }
+        return signature.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static int bucketOf(long millis) {
+        if (millis <= 1) return 0;
+        int bucket = (int) (Math.log(millis) / LOG_GAMMA);
+        return Math.min(BUCKET_COUNT - 1, bucket);
+    }
+
+    // ============== 持久化（格式：签名\tt:超时次数,c:连续超时次数,桶序号:计数,桶序号:计数...） ==============
+    public void save() {
+        if (statsFile == null) return;
+        StringBuilder content = new StringBuilder();
+        synchronized (this) {
+            unsavedRecords = 0;
+            for (Map.Entry<String, LatencySketch> entry : sketches.entrySet()) {
+                content.append(entry.getKey()).append('\t');
+                int[] counts = entry.getValue().counts;
+                content.append("t:").append(entry.getValue().timeouts);
+                content.append(",c:").append(entry.getValue().consecutiveTimeouts);
+                for (int i = 0; i < BUCKET_COUNT; i++) {
+                    if (counts[i] == 0) continue;
+                    content.append(',').append(i).append(':').append(counts[i]);
+                }
+                content.append('\n');
+            }
+        }
+
+        // 先写临时文件再替换，避免写一半时进程被杀导致统计损坏；临时文件名唯一，其他进程同时保存也不会互相写坏
+        saveLock.lock();
+        try {
+            File tmpFile;
+            try {
+                tmpFile = File.createTempFile(statsFile.getName(), ".tmp", statsFile.getAbsoluteFile().getParentFile());
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)) {
+                writer.write(content.toString());
+            } catch (IOException e) {
+                e.printStackTrace();
+                tmpFile.delete();
+                return;
+            }
+            if (!tmpFile.renameTo(statsFile)) {
+                tmpFile.delete();
+            }
+        } finally {
+            saveLock.unlock();
+        }
+    }
+
+    private void load() {
+        if (statsFile == null || !statsFile.exists()) return;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(statsFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab <= 0) continue;
+                LatencySketch sketch = new LatencySketch();
+                for (String pair : line.substring(tab + 1).split(",")) {
+                    int colon = pair.indexOf(':');
+                    if (colon <= 0) continue;
+                    try {
+                        if (pair.startsWith("t:")) {
+                            sketch.timeouts = Math.max(0, Integer.parseInt(pair.substring(2)));
+                            continue;
+                        }
+                        if (pair.startsWith("c:")) {
+                            sketch.consecutiveTimeouts = Math.max(0, Integer.parseInt(pair.substring(2)));
+                            continue;
+                        }
+                        int bucket = Integer.parseInt(pair.substring(0, colon));
+                        int count = Integer.parseInt(pair.substring(colon + 1));
+                        if (bucket >= 0 && bucket < BUCKET_COUNT && count > 0) {
+                            sketch.counts[bucket] += count;
+                            sketch.total += count;
+                        }
+                    } catch (NumberFormatException ignored) {
+                        // 跳过损坏的条目
+                    }
+                }
+                if ((sketch.total > 0 || sketch.timeouts > 0) && sketches.size() < MAX_SIGNATURES) {
+                    sketches.put(line.substring(0, tab), sketch);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
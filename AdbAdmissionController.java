@@ -0,0 +1,277 @@
+package com.AdbService;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 单设备准入控制：保护低端设备上的 adbd，避免同时打开过多 shell: 流导致设备掉线。
+ * 三层限制：
+ * 1. 并发流上限（硬上限 maxConcurrentStreams）
+ * 2. 令牌桶限制开流速率（每秒 openRatePerSecond 个，允许 burst 突发）
+ * 3. 可选 AIMD 自适应上限：开流失败或开流延迟突增时乘性减小，正常时加性增长
+ * 线程安全，所有状态由 ReentrantLock 保护；等待名额用 Condition，不用 synchronized / Object.wait，
+ * 虚拟线程在等待时不会钉住载体线程。
+ */
+public class AdbAdmissionController {
+    // 默认并发流上限；执行命令的工作线程数按此值配置，保证自适应上限可以真正达到
+    public static final int DEFAULT_MAX_CONCURRENT_STREAMS = 8;
+
+    // AIMD 参数
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final long DECREASE_COOLDOWN_MS = 1000;
+    // 延迟基线 EWMA 平滑系数（越小越稳定）
+    private static final double LATENCY_EWMA_ALPHA = 0.1;
+    // 开流延迟超过基线的倍数视为突增（且需超过最小绝对值，避免毫秒级抖动误判）
+    private static final double LATENCY_SPIKE_FACTOR = 3.0;
+    private static final long LATENCY_SPIKE_MIN_MS = 50;
+
+    private final String deviceKey;
+    private final ReentrantLock lock = new ReentrantLock();
+    // 名额释放、上限提高时唤醒等待者
+    private final Condition stateChanged = lock.newCondition();
+
+    // 配置
+    private int maxConcurrentStreams = DEFAULT_MAX_CONCURRENT_STREAMS;
+    private int minConcurrentStreams = 1;
+    private double openRatePerSecond = 20;
+    private int burst = 10;
+    private boolean adaptive = true;
+
+    // 运行状态
+    private double currentLimit = maxConcurrentStreams;
+    private int inFlight = 0;
+    private double tokens = burst;
+    private long lastRefillNanos = System.nanoTime();
+    private double latencyBaselineMs = -1;
+    private long lastDecreaseMillis = 0;
+
+    // 统计
+    private long admittedCount = 0;
+    private long rejectedCount = 0;
+    private long openFailureCount = 0;
+    private long backoffCount = 0;
+
+    public AdbAdmissionController(@NonNull String deviceKey) {
+        this.deviceKey = deviceKey;
+    }
+
+    // ============== 配置接口 ==============
+    public void setMaxConcurrentStreams(int maxConcurrentStreams) {
+        lock.lock();
+        try {
+            if (maxConcurrentStreams > 0) {
+                this.maxConcurrentStreams = maxConcurrentStreams;
+                this.minConcurrentStreams = Math.min(minConcurrentStreams, maxConcurrentStreams);
+                this.currentLimit = adaptive ? Math.min(currentLimit, maxConcurrentStreams) : maxConcurrentStreams;
+                stateChanged.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void setOpenRate(double openRatePerSecond, int burst) {
+        lock.lock();
+        try {
+            if (openRatePerSecond > 0 && burst > 0) {
+                this.openRatePerSecond = openRatePerSecond;
+                this.burst = burst;
+                this.tokens = Math.min(tokens, burst);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void setAdaptive(boolean adaptive) {
+        lock.lock();
+        try {
+            this.adaptive = adaptive;
+            if (!adaptive) {
+                currentLimit = maxConcurrentStreams;
+                stateChanged.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ============== 核心：准入 / 反馈 / 释放 ==============
+    /**
+     * 申请打开一个流；在 waitMillis 内拿不到并发名额或令牌则拒绝
+     * @return true 表示已准入，调用方必须在流关闭后调用 {@link #release()}
+     */
+    public boolean tryAcquire(long waitMillis) throws InterruptedException {
+        lock.lock();
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+            while (true) {
+                refillTokens();
+                if (inFlight < (int) currentLimit && tokens >= 1) {
+                    tokens -= 1;
+                    inFlight++;
+                    admittedCount++;
+                    return true;
+                }
+
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    rejectedCount++;
+                    return false;
+                }
+                // 并发名额由 release 唤醒；令牌不足时按补充速率等待
+                long waitNanos = remainingNanos;
+                if (inFlight < (int) currentLimit) {
+                    long tokenNanos = (long) ((1 - tokens) / openRatePerSecond * TimeUnit.SECONDS.toNanos(1));
+                    waitNanos = Math.min(waitNanos, Math.max(tokenNanos, TimeUnit.MILLISECONDS.toNanos(1)));
+                }
+                stateChanged.awaitNanos(waitNanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 反馈一次开流结果，用于 AIMD 自适应调整上限
+     */
+    public void recordOpenResult(boolean success, long openLatencyMillis) {
+        lock.lock();
+        try {
+            if (!success) {
+                openFailureCount++;
+                decreaseLimit();
+                return;
+            }
+
+            boolean isSpike = latencyBaselineMs > 0
+                    && openLatencyMillis > LATENCY_SPIKE_MIN_MS
+                    && openLatencyMillis > latencyBaselineMs * LATENCY_SPIKE_FACTOR;
+            // 突增样本不计入基线，否则基线会被拉高而掩盖拥塞
+            if (latencyBaselineMs < 0) {
+                latencyBaselineMs = openLatencyMillis;
+            } else if (!isSpike) {
+                latencyBaselineMs += LATENCY_EWMA_ALPHA * (openLatencyMillis - latencyBaselineMs);
+            }
+
+            if (isSpike) {
+                decreaseLimit();
+            } else if (adaptive && currentLimit < maxConcurrentStreams) {
+                // 加性增长：每个满窗口约 +1
+                currentLimit = Math.min(maxConcurrentStreams, currentLimit + 1.0 / currentLimit);
+                stateChanged.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 流关闭后归还并发名额
+     */
+    public void release() {
+        lock.lock();
+        try {
+            if (inFlight > 0) {
+                inFlight--;
+            }
+            stateChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void decreaseLimit() {
+        if (!adaptive) return;
+        long now = System.currentTimeMillis();
+        // 冷却期内只减一次，避免同一次拥塞中多个失败把上限连续砍到底
+        if (now - lastDecreaseMillis < DECREASE_COOLDOWN_MS) return;
+        lastDecreaseMillis = now;
+        currentLimit = Math.max(minConcurrentStreams, currentLimit * DECREASE_FACTOR);
+        backoffCount++;
+    }
+
+    private void refillTokens() {
+        long now = System.nanoTime();
+        double elapsedSeconds = (now - lastRefillNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        lastRefillNanos = now;
+        tokens = Math.min(burst, tokens + elapsedSeconds * openRatePerSecond);
+    }
+
+    // ============== 统计查询 ==============
+    @NonNull
+    public String getDeviceKey() {
+        return deviceKey;
+    }
+
+    public int getCurrentLimit() {
+        lock.lock();
+        try {
+            return (int) currentLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getAdmittedCount() {
+        lock.lock();
+        try {
+            return admittedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRejectedCount() {
+        lock.lock();
+        try {
+            return rejectedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getOpenFailureCount() {
+        lock.lock();
+        try {
+            return openFailureCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getBackoffCount() {
+        lock.lock();
+        try {
+            return backoffCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @NonNull
+    public String getStatsSummary() {
+        lock.lock();
+        try {
+            return String.format(Locale.ROOT,
+                    "设备 %s：并发上限 %d/%d，在途 %d，已准入 %d，已拒绝 %d，开流失败 %d，退避 %d 次，开流延迟基线 %.1fms",
+                    deviceKey, (int) currentLimit, maxConcurrentStreams, inFlight,
+                    admittedCount, rejectedCount, openFailureCount, backoffCount, Math.max(0, latencyBaselineMs));
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.AdbService;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.github.muntashirakon.adb.AbsAdbConnectionManager;
+import io.github.muntashirakon.adb.AdbStream;
+
+/**
+ * 流式 APK 安装：直接把 FileChannel 中的数据写入 exec:cmd package install -S 的标准输入，
+ * 不先推送到设备再 pm install，省去一次完整的读写。多个 APK（split）走
+ * install-create / install-write / install-commit 会话。
+ * 耗时拆分为传输阶段（写完最后一个字节）与设备端阶段（写完到收到安装结果）。
+ * 每个流都经过设备的准入控制；等待设备返回有截止时间，超时关闭流并按失败处理。
+ */
+public class AdbApkInstaller {
+    // 传输块大小，缓冲区在一次安装内复用
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final Pattern SESSION_ID_PATTERN = Pattern.compile("\\[(\\d+)]");
+    // 等待准入名额的时间
+    private static final long ADMISSION_WAIT_MILLIS = 10000;
+
+    /** 单台设备的安装结果 */
+    public static class InstallResult {
+        public final String deviceKey;
+        public final boolean success;
+        public final String message;
+        public final long totalBytes;
+        public final long transferMillis;
+        public final long onDeviceMillis;
+
+        InstallResult(String deviceKey, boolean success, String message,
+                      long totalBytes, long transferMillis, long onDeviceMillis) {
+            this.deviceKey = deviceKey;
+            this.success = success;
+            this.message = message;
+            this.totalBytes = totalBytes;
+            this.transferMillis = transferMillis;
+            this.onDeviceMillis = onDeviceMillis;
+        }
+
+        static InstallResult failed(String deviceKey, String message) {
+            return new InstallResult(deviceKey, false, message, 0, 0, 0);
+        }
+
+        @NonNull
+        public String getSummary() {
+            double seconds = Math.max(0.001, transferMillis / 1000.0);
+            return String.format(Locale.ROOT, "%s：%s（%s），传输 %d 毫秒（%.1f MB/s），设备端 %d 毫秒",
+                    deviceKey, success ? "安装成功" : "安装失败", message,
+                    transferMillis, totalBytes / 1024.0 / 1024.0 / seconds, onDeviceMillis);
+        }
+    }
+
+    private final AbsAdbConnectionManager connectionManager;
+    @Nullable
+    private final AdbAdmissionController admissionController;
+    private final ScheduledExecutorService timeoutExecutor;
+    private final String deviceKey;
+    private final ByteBuffer transferBuffer = ByteBuffer.allocate(CHUNK_SIZE);
+    // 写完数据后等待设备返回的最长时间（大 APK 的 dexopt 可能较慢）
+    private long responseTimeoutMillis = 5 * 60_000;
+    private long transferMillis = 0;
+    private long onDeviceMillis = 0;
+
+    public AdbApkInstaller(@NonNull AbsAdbConnectionManager connectionManager,
+                           @Nullable AdbAdmissionController admissionController,
+                           @NonNull ScheduledExecutorService timeoutExecutor, @NonNull String deviceKey) {
+        this.connectionManager = connectionManager;
+        this.admissionController = admissionController;
+        this.timeoutExecutor = timeoutExecutor;
+        this.deviceKey = deviceKey;
+    }
+
+    public void setResponseTimeoutMillis(long responseTimeoutMillis) {
+        if (responseTimeoutMillis > 0) {
+            this.responseTimeoutMillis = responseTimeoutMillis;
+        }
+    }
+
+    /**
+     * 安装一个或多个（split）APK；阻塞直到设备返回结果，须在工作线程调用
+     */
+    @NonNull
+    public InstallResult install(@NonNull List<File> apkFiles) {
+        if (apkFiles.isEmpty()) {
+            return InstallResult.failed(deviceKey, "APK 列表为空");
+        }
+        long totalBytes = 0;
+        for (File apkFile : apkFiles) {
+            if (!apkFile.isFile()) {
+                return InstallResult.failed(deviceKey, "APK 文件不存在：" + apkFile.getPath());
+            }
+            totalBytes += apkFile.length();
+        }
+
+        transferMillis = 0;
+        onDeviceMillis = 0;
+        try {
+            String response = apkFiles.size() == 1
+                    ? installSingle(apkFiles.get(0))
+                    : installSession(apkFiles, totalBytes);
+            boolean success = response.startsWith("Success");
+            return new InstallResult(deviceKey, success, response, totalBytes, transferMillis, onDeviceMillis);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new InstallResult(deviceKey, false,
+                    "安装异常：" + (e.getMessage() == null ? "未知错误" : e.getMessage()),
+                    totalBytes, transferMillis, onDeviceMillis);
+        }
+    }
+
+    // 单 APK：一个流完成传输 + 安装
+    @NonNull
+    private String installSingle(@NonNull File apkFile) throws Exception {
+        return streamFile("exec:cmd package install -S " + apkFile.length(), apkFile);
+    }
+
+    // 多 APK：创建会话 -> 逐个写入 -> 提交，任一步失败则放弃会话
+    @NonNull
+    private String installSession(@NonNull List<File> apkFiles, long totalBytes) throws Exception {
+        String createResponse = runCommand("exec:cmd package install-create -S " + totalBytes);
+        Matcher matcher = SESSION_ID_PATTERN.matcher(createResponse);
+        if (!createResponse.startsWith("Success") || !matcher.find()) {
+            return createResponse;
+        }
+        String sessionId = matcher.group(1);
+
+        try {
+            for (int i = 0; i < apkFiles.size(); i++) {
+                File apkFile = apkFiles.get(i);
+                // 会话内的文件名只能包含安全字符，加序号避免重名
+                String splitName = i + "_" + apkFile.getName().replaceAll("[^A-Za-z0-9._-]", "_");
+                String writeResponse = streamFile(String.format(Locale.ROOT,
+                        "exec:cmd package install-write -S %d %s %s -", apkFile.length(), sessionId, splitName), apkFile);
+                if (!writeResponse.startsWith("Success")) {
+                    runCommand("exec:cmd package install-abandon " + sessionId);
+                    return writeResponse;
+                }
+            }
+        } catch (Exception e) {
+            runCommand("exec:cmd package install-abandon " + sessionId);
+            throw e;
+        }
+
+        long commitStart = System.currentTimeMillis();
+        String commitResponse = runCommand("exec:cmd package install-commit " + sessionId);
+        onDeviceMillis += System.currentTimeMillis() - commitStart;
+        return commitResponse;
+    }
+
+    /**
+     * 打开服务流，把文件从 FileChannel 直接写入流，再读取设备返回
+     */
+    @NonNull
+    private String streamFile(@NonNull String service, @NonNull File file) throws Exception {
+        AdbStream stream = openStream(service);
+        try (FileChannel fileChannel = new FileInputStream(file).getChannel()) {
+            long transferStart = System.currentTimeMillis();
+            OutputStream toDevice = stream.openOutputStream();
+            transferBuffer.clear();
+            while (fileChannel.read(transferBuffer) >= 0) {
+                if (transferBuffer.position() == 0) continue;
+                toDevice.write(transferBuffer.array(), 0, transferBuffer.position());
+                transferBuffer.clear();
+            }
+            toDevice.flush();
+            long transferEnd = System.currentTimeMillis();
+            transferMillis += transferEnd - transferStart;
+
+            String response = readResponse(stream);
+            onDeviceMillis += System.currentTimeMillis() - transferEnd;
+            return response;
+        } finally {
+            closeStream(stream);
+        }
+    }
+
+    @NonNull
+    private String runCommand(@NonNull String service) throws Exception {
+        AdbStream stream = openStream(service);
+        try {
+            return readResponse(stream);
+        } finally {
+            closeStream(stream);
+        }
+    }
+
+    /**
+     * 获得准入名额后打开流；打开失败时归还名额，成功时名额由 closeStream 归还
+     */
+    @NonNull
+    private AdbStream openStream(@NonNull String service) throws Exception {
+        if (admissionController != null && !admissionController.tryAcquire(ADMISSION_WAIT_MILLIS)) {
+            throw new IOException("设备繁忙，未获得执行名额");
+        }
+        boolean opened = false;
+        long openStart = System.currentTimeMillis();
+        try {
+            AdbStream stream = connectionManager.openStream(service);
+            opened = stream != null && !stream.isClosed();
+            if (!opened) {
+                throw new IOException("无法打开 ADB 流：" + service);
+            }
+            return stream;
+        } finally {
+            if (admissionController != null) {
+                admissionController.recordOpenResult(opened, System.currentTimeMillis() - openStart);
+                if (!opened) {
+                    admissionController.release();
+                }
+            }
+        }
+    }
+
+    private void closeStream(@NonNull AdbStream stream) {
+        closeQuietly(stream);
+        if (admissionController != null) {
+            admissionController.release();
+        }
+    }
+
+    // 读到流结束为止；超过截止时间由定时任务关闭流，读循环随之结束
+    @NonNull
+    private String readResponse(@NonNull AdbStream stream) throws IOException {
+        AtomicBoolean isTimeout = new AtomicBoolean(false);
+        ScheduledFuture<?> deadline = timeoutExecutor.schedule(() -> {
+            isTimeout.set(true);
+            closeQuietly(stream);
+        }, responseTimeoutMillis, TimeUnit.MILLISECONDS);
+
+        AdbOutputBuffer buffer = new AdbOutputBuffer();
+        try {
+            buffer.readFrom(stream.openInputStream());
+        } catch (IOException e) {
+            if (!isTimeout.get()) throw e;
+        } finally {
+            deadline.cancel(false);
+        }
+        if (isTimeout.get()) {
+            throw new IOException("等待设备返回超时（" + responseTimeoutMillis + " 毫秒）");
+        }
+        buffer.normalizeLineEndings();
+        return buffer.toTrimmedString();
+    }
+
+    private static void closeQuietly(@Nullable AdbStream stream) {
+        if (stream == null || stream.isClosed()) return;
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.AdbService;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 有界输出缓冲池：容量与工作线程数一致，稳态下每个工作线程都能拿到一块复用的缓冲区；
+ * 池空时临时新建（不阻塞），池满时归还的缓冲区直接丢弃交给 GC。
+ */
+public class AdbBufferPool {
+    private final ArrayBlockingQueue<AdbOutputBuffer> pool;
+
+    // 统计：命中复用 / 临时新建
+    private final AtomicLong reuseCount = new AtomicLong();
+    private final AtomicLong allocateCount = new AtomicLong();
+
+    public AdbBufferPool(int capacity) {
+        pool = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    }
+
+    @NonNull
+    public AdbOutputBuffer acquire() {
+        AdbOutputBuffer buffer = pool.poll();
+        if (buffer != null) {
+            reuseCount.incrementAndGet();
+            return buffer;
+        }
+        allocateCount.incrementAndGet();
+        return new AdbOutputBuffer();
+    }
+
+    public void release(@NonNull AdbOutputBuffer buffer) {
+        buffer.reset();
+        pool.offer(buffer);
+    }
+
+    public long getReuseCount() {
+        return reuseCount.get();
+    }
+
+    public long getAllocateCount() {
+        return allocateCount.get();
+    }
+}
@@ -1,22 +1,12 @@
 package com.AdbService;
 
 // ========== 基础导入 ==========
-import android.content.Context;
-import android.os.Build;
-import android.util.Base64;
-
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import java.io.ByteArrayInputStream;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.math.BigInteger;
-import java.nio.charset.StandardCharsets;
 import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
@@ -25,7 +15,6 @@ import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.SecureRandom;
 import java.security.cert.Certificate;
-import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
@@ -33,6 +22,9 @@ import java.security.spec.EncodedKeySpec;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.util.Date;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.crypto.Cipher;
 
 import io.github.muntashirakon.adb.AbsAdbConnectionManager;
 
@@ -60,45 +52,64 @@ public class AdbConnectionManager extends AbsAdbConnectionManager {
     private static final String CERT_FILE_NAME = "adb_cert.pem";
     private static final String PRIVATE_KEY_FILE_NAME = "adb_private.key";
 
+    // 密钥/证书「读取 → 缺失则生成并写入」须整体串行，否则同一数据目录上并发创建的实例会各自生成不同的密钥
+    private static final ReentrantLock KEY_STORE_LOCK = new ReentrantLock();
+
     // Spongy Castle 提供器（全局初始化，包名兼容）
     private static final BouncyCastleProvider SC_PROVIDER = new BouncyCastleProvider();
 
+    // 平台：密钥/证书存储与设备信息
+    private final AdbPlatform mPlatform;
+
     // ADB 认证核心数据
     private PrivateKey mPrivateKey;
     private Certificate mCertificate;
+    // RSA Cipher 预热标记，只需执行一次
+    private volatile boolean mRsaCipherWarmedUp = false;
 
     // ============== 单例获取方法 ==============
-    public static AdbConnectionManager getInstance(@NonNull Context context) throws Exception {
+    public static AdbConnectionManager getInstance(@NonNull AdbPlatform platform) throws Exception {
         if (INSTANCE == null) {
             synchronized (AdbConnectionManager.class) {
                 if (INSTANCE == null) {
-                    INSTANCE = new AdbConnectionManager(context.getApplicationContext());
+                    INSTANCE = new AdbConnectionManager(platform);
                 }
             }
         }
         return INSTANCE;
     }
 
+    // ============== 多设备：创建独立连接实例（与单例共用持久化的密钥/证书） ==============
+    public static AdbConnectionManager createForDevice(@NonNull AdbPlatform platform) throws Exception {
+        return new AdbConnectionManager(platform);
+    }
+
     // ============== 私有构造方法（初始化密钥/证书） ==============
-    private AdbConnectionManager(@NonNull Context context) throws Exception {
-        // 适配设备 Android API 版本
-        setApi(Build.VERSION.SDK_INT);
-
-        // 第一步：从文件加载已持久化的密钥/证书
-        mPrivateKey = readPrivateKeyFromFile(context);
-        mCertificate = readCertificateFromFile(context);
-
-        // 第二步：若加载失败，生成新的「标准 RSA 密钥对 + 完整 X.509 证书」
-        if (mPrivateKey == null || mCertificate == null) {
-            generateStandardKeyPairAndCert();
-            // 持久化到文件，下次启动直接加载
-            writePrivateKeyToFile(context, mPrivateKey);
-            writeCertificateToFile(context, mCertificate);
-
-            // 兜底校验：确保生成成功
+    private AdbConnectionManager(@NonNull AdbPlatform platform) throws Exception {
+        mPlatform = platform;
+        // 适配本机 API 版本
+        setApi(platform.getApiLevel());
+
+        KEY_STORE_LOCK.lock();
+        try {
+            // 第一步：从平台存储加载已持久化的密钥/证书
+            mPrivateKey = readPrivateKey();
+            mCertificate = readCertificate();
+
+            // 第二步：若加载失败，生成新的「标准 RSA 密钥对 + 完整 X.509 证书」
             if (mPrivateKey == null || mCertificate == null) {
-                throw new Exception("密钥/证书生成失败，无法完成 ADB 认证");
+                generateStandardKeyPairAndCert();
+                // 持久化到文件，下次启动直接加载
+                mPlatform.writeKeyBlob(PRIVATE_KEY_FILE_NAME, mPrivateKey.getEncoded());
+                mPlatform.writeKeyBlob(CERT_FILE_NAME, mCertificate.getEncoded());
+
+                // 兜底校验：确保生成成功
+                if (mPrivateKey == null || mCertificate == null) {
+                    throw new Exception("密钥/证书生成失败，无法完成 ADB 认证");
+                }
             }
+        } finally {
+            KEY_STORE_LOCK.unlock();
         }
     }
 
@@ -153,6 +164,20 @@ public class AdbConnectionManager extends AbsAdbConnectionManager {
                 .getCertificate(certHolder);
     }
 
+    // ============== 预热 RSA Cipher：对全零数据做一次私钥运算 ==============
+    // 只让 Provider 查找、类加载和 JIT 提前发生；AUTH 令牌由设备随机生成，签名本身无法预先计算
+    public void warmUpRsaCipher() {
+        if (mRsaCipherWarmedUp) return;
+        try {
+            Cipher cipher = Cipher.getInstance("RSA/ECB/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, getPrivateKey());
+            cipher.doFinal(new byte[256]);
+            mRsaCipherWarmedUp = true;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
     // ============== 实现 AbsAdbConnectionManager 抽象方法 ==============
     @NonNull
     @Override
@@ -183,68 +208,28 @@ public class AdbConnectionManager extends AbsAdbConnectionManager {
     @NonNull
     @Override
     protected String getDeviceName() {
-        return Build.MODEL + "_AdbService";
+        return mPlatform.getDeviceModel() + "_AdbService";
     }
 
-    // ============== 密钥/证书文件读写（适配 Spongy Castle，无错误） ==============
+    // ============== 密钥/证书读取（存储格式由平台决定，Android 端为 Base64 文件） ==============
     @Nullable
-    private PrivateKey readPrivateKeyFromFile(@NonNull Context context)
+    private PrivateKey readPrivateKey()
             throws IOException, NoSuchAlgorithmException, InvalidKeySpecException {
-        File privateKeyFile = new File(context.getFilesDir(), PRIVATE_KEY_FILE_NAME);
-        if (!privateKeyFile.exists()) return null;
-
-        byte[] fileBytes = new byte[(int) privateKeyFile.length()];
-        try (InputStream is = new FileInputStream(privateKeyFile)) {
-            is.read(fileBytes);
-        }
-
-        byte[] privKeyBytes;
-        try {
-            privKeyBytes = Base64.decode(new String(fileBytes, StandardCharsets.UTF_8), Base64.DEFAULT);
-        } catch (IllegalArgumentException e) {
-            // 兼容旧格式，直接使用原始字节
-            privKeyBytes = fileBytes;
-        }
+        byte[] privKeyBytes = mPlatform.readKeyBlob(PRIVATE_KEY_FILE_NAME);
+        if (privKeyBytes == null) return null;
 
         KeyFactory keyFactory = KeyFactory.getInstance("RSA", SC_PROVIDER);
         EncodedKeySpec privateKeySpec = new PKCS8EncodedKeySpec(privKeyBytes);
         return keyFactory.generatePrivate(privateKeySpec);
     }
 
-    private void writePrivateKeyToFile(@NonNull Context context, @NonNull PrivateKey privateKey)
-            throws IOException {
-        File privateKeyFile = new File(context.getFilesDir(), PRIVATE_KEY_FILE_NAME);
-
-        String base64PrivateKey = Base64.encodeToString(privateKey.getEncoded(), Base64.DEFAULT);
-        try (OutputStream os = new FileOutputStream(privateKeyFile)) {
-            os.write(base64PrivateKey.getBytes(StandardCharsets.UTF_8));
-        }
-    }
-
     @Nullable
-    private Certificate readCertificateFromFile(@NonNull Context context)
+    private Certificate readCertificate()
             throws IOException, CertificateException {
-        File certFile = new File(context.getFilesDir(), CERT_FILE_NAME);
-        if (!certFile.exists()) return null;
-
-        try (InputStream is = new FileInputStream(certFile)) {
-            byte[] fileBytes = new byte[(int) certFile.length()];
-            is.read(fileBytes);
-
-            byte[] certBytes = Base64.decode(fileBytes, Base64.DEFAULT);
-
-            CertificateFactory cf = CertificateFactory.getInstance("X.509", SC_PROVIDER);
-            return cf.generateCertificate(new ByteArrayInputStream(certBytes));
-        }
-    }
+        byte[] certBytes = mPlatform.readKeyBlob(CERT_FILE_NAME);
+        if (certBytes == null) return null;
 
-    private void writeCertificateToFile(@NonNull Context context, @NonNull Certificate certificate)
-            throws IOException, CertificateEncodingException {
-        File certFile = new File(context.getFilesDir(), CERT_FILE_NAME);
-
-        String base64Cert = Base64.encodeToString(certificate.getEncoded(), Base64.DEFAULT);
-        try (OutputStream os = new FileOutputStream(certFile)) {
-            os.write(base64Cert.getBytes(StandardCharsets.UTF_8));
-        }
+        CertificateFactory cf = CertificateFactory.getInstance("X.509", SC_PROVIDER);
+        return cf.generateCertificate(new ByteArrayInputStream(certBytes));
     }
 }
\ No newline at end of file
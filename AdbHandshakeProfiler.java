@@ -0,0 +1,161 @@
+package com.AdbService;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 握手耗时分析：记录每次连接/重连的实际 connect 耗时，保留最近若干次历史并计算中位数 / P95，
+ * 最新一次明显慢于历史中位数时标记为回退。
+ * libadb 的 connect 内部依次完成 TCP、CNXN、TLS、AUTH，没有分阶段回调，因此这里只记录整体耗时；
+ * 连接失败后可用 {@link #probe} 单独测 TCP / CNXN 并判断端口是否仍是 adbd，用于给出失败原因。
+ */
+public class AdbHandshakeProfiler {
+    private static final int HISTORY_SIZE = 50;
+    // 最新一次总耗时超过历史中位数的倍数视为回退
+    private static final double REGRESSION_FACTOR = 2.0;
+    private static final int REGRESSION_MIN_SAMPLES = 5;
+
+    /** 一次握手：totalMillis 为实际 connect 调用的耗时 */
+    public static class Timings {
+        public final long totalMillis;
+        public final boolean reconnect;
+
+        Timings(long totalMillis, boolean reconnect) {
+            this.totalMillis = totalMillis;
+            this.reconnect = reconnect;
+        }
+
+        @NonNull
+        public String getSummary() {
+            return String.format(Locale.ROOT, "%s耗时 %dms", reconnect ? "重连" : "连接", totalMillis);
+        }
+    }
+
+    /** 探测结果：端口是否为 adbd、是否要求 TLS，以及探测连接自身的 TCP / CNXN 耗时（失败为 -1） */
+    public static class ProbeResult {
+        public final boolean isAdb;
+        public final boolean tlsRequired;
+        public final long tcpConnectMillis;
+        public final long cnxnMillis;
+
+        ProbeResult(boolean isAdb, boolean tlsRequired, long tcpConnectMillis, long cnxnMillis) {
+            this.isAdb = isAdb;
+            this.tlsRequired = tlsRequired;
+            this.tcpConnectMillis = tcpConnectMillis;
+            this.cnxnMillis = cnxnMillis;
+        }
+
+        @NonNull
+        public String getSummary() {
+            if (tcpConnectMillis < 0) {
+                return "TCP 无法建立连接";
+            }
+            if (!isAdb) {
+                return String.format(Locale.ROOT, "TCP %dms，端口无 ADB 应答", tcpConnectMillis);
+            }
+            return String.format(Locale.ROOT, "TCP %dms，CNXN %dms，%s", tcpConnectMillis, cnxnMillis,
+                    tlsRequired ? "要求 TLS" : "无需 TLS");
+        }
+    }
+
+    private final Deque<Timings> history = new ArrayDeque<>();
+
+    /**
+     * 探测 adbd：建连并发送 CNXN，读取应答报文头；只在连接失败后用于诊断，不在正常连接路径上执行
+     */
+    @NonNull
+    public ProbeResult probe(@NonNull String host, int port, int timeoutMillis) {
+        long start = System.currentTimeMillis();
+        long tcpConnectMillis = -1;
+        try (Socket socket = new Socket()) {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+            long connected = System.currentTimeMillis();
+            tcpConnectMillis = connected - start;
+
+            socket.setSoTimeout(timeoutMillis);
+            OutputStream os = socket.getOutputStream();
+            os.write(AdbPortScanner.buildCnxnPacket());
+            os.flush();
+            byte[] header = new byte[AdbPortScanner.HEADER_LENGTH];
+            new DataInputStream(socket.getInputStream()).readFully(header);
+            long replied = System.currentTimeMillis();
+
+            ByteBuffer headerBuffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+            headerBuffer.position(header.length);
+            boolean isAdb = AdbPortScanner.isAdbHeader(headerBuffer);
+            boolean tlsRequired = isAdb && headerBuffer.getInt(0) == AdbPortScanner.A_STLS;
+            return new ProbeResult(isAdb, tlsRequired, tcpConnectMillis, replied - connected);
+        } catch (IOException e) {
+            // 建连成功但没有 ADB 应答时保留 TCP 耗时
+            return new ProbeResult(false, false, tcpConnectMillis, -1);
+        }
+    }
+
+    /**
+     * 记录一次成功的握手
+     * @param connectMillis 实际 connect 调用的耗时
+     */
+    @NonNull
+    public synchronized Timings record(long connectMillis, boolean reconnect) {
+        Timings timings = new Timings(connectMillis, reconnect);
+        history.addLast(timings);
+        while (history.size() > HISTORY_SIZE) {
+            history.removeFirst();
+        }
+        return timings;
+    }
+
+    @Nullable
+    public synchronized Timings getLatest() {
+        return history.peekLast();
+    }
+
+    /**
+     * 历史总耗时的分位数（q 取 0~1），无历史时返回 -1
+     */
+    public synchronized long getTotalQuantile(double q) {
+        if (history.isEmpty()) return -1;
+        List<Long> totals = new ArrayList<>(history.size());
+        for (Timings timings : history) {
+            totals.add(timings.totalMillis);
+        }
+        Collections.sort(totals);
+        int index = (int) Math.min(totals.size() - 1, Math.max(0, Math.ceil(q * totals.size()) - 1));
+        return totals.get(index);
+    }
+
+    /**
+     * 最新一次握手是否明显慢于历史中位数（用于发现回退）
+     */
+    public synchronized boolean isLatestRegressed() {
+        if (history.size() < REGRESSION_MIN_SAMPLES) return false;
+        Timings latest = history.peekLast();
+        return latest != null && latest.totalMillis > getTotalQuantile(0.5) * REGRESSION_FACTOR;
+    }
+
+    @NonNull
+    public synchronized String getStatsSummary() {
+        Timings latest = history.peekLast();
+        if (latest == null) {
+            return "握手：暂无记录";
+        }
+        return String.format(Locale.ROOT, "握手：最近一次%s；历史 %d 次，中位数 %dms，P95 %dms%s",
+                latest.getSummary(), history.size(), getTotalQuantile(0.5), getTotalQuantile(0.95),
+                isLatestRegressed() ? "（最近一次明显变慢）" : "");
+    }
+}
@@ -0,0 +1,117 @@
+package com.AdbService;
+
+import androidx.annotation.NonNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 可复用的命令输出缓冲区：直接把流读入内部 byte[]，换行规整与 trim 都在原始字节上完成，
+ * 最终只在生成结果字符串时拷贝一次。配合 {@link AdbBufferPool} 复用，避免每条命令都分配
+ * BufferedReader / InputStreamReader / 每行 String / StringBuilder 扩容 / trim 拷贝。
+ * 非线程安全：同一时刻只允许一个工作线程持有。
+ */
+public class AdbOutputBuffer {
+    private static final int INITIAL_CAPACITY = 16 * 1024;
+    // 归还到池中时，超过该容量的大数组会被收缩，防止偶发的大输出长期占用内存
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+    private byte[] data = new byte[INITIAL_CAPACITY];
+    private int length = 0;
+
+    /**
+     * 读取输入流直到 EOF，数据直接写入内部数组（无中间缓冲）。
+     * 远端关闭流时 libadb 抛出 "Stream closed" 而不是返回 -1，与原读取路径一致视为正常结束
+     */
+    public void readFrom(@NonNull InputStream inputStream) throws IOException {
+        int read;
+        while (true) {
+            if (length == data.length) {
+                data = Arrays.copyOf(data, data.length << 1);
+            }
+            try {
+                read = inputStream.read(data, length, data.length - length);
+            } catch (IOException e) {
+                if (isStreamClosed(e)) break;
+                throw e;
+            }
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+    }
+
+    /**
+     * 是否为流已关闭导致的读异常（libadb 在远端关闭流后读取时抛出）
+     */
+    public static boolean isStreamClosed(@NonNull IOException e) {
+        String message = e.getMessage();
+        return message != null && message.toLowerCase(Locale.ROOT).contains("stream closed");
+    }
+
+    /**
+     * 从输入流读取恰好 count 字节追加到内部数组（用于按长度分帧的协议），流提前结束时抛 EOFException
+     */
+    public void appendFrom(@NonNull InputStream inputStream, int count) throws IOException {
+        if (length + count > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length << 1, length + count));
+        }
+        while (count > 0) {
+            int read = inputStream.read(data, length, count);
+            if (read < 0) {
+                throw new EOFException("流提前结束，仍缺少 " + count + " 字节");
+            }
+            length += read;
+            count -= read;
+        }
+    }
+
+    /**
+     * 换行规整：\r\n 与单独的 \r 统一为 \n（与 BufferedReader.readLine 的断行规则一致），原地压缩
+     */
+    public void normalizeLineEndings() {
+        int write = 0;
+        for (int read = 0; read < length; read++) {
+            byte b = data[read];
+            if (b == '\r') {
+                if (read + 1 < length && data[read + 1] == '\n') {
+                    continue; // \r\n：丢弃 \r，保留后面的 \n
+                }
+                b = '\n';
+            }
+            data[write++] = b;
+        }
+        length = write;
+    }
+
+    /**
+     * 去掉首尾空白后解码为字符串（ISO_8859_1 与原读取路径一致，字节与字符一一对应）
+     */
+    @NonNull
+    public String toTrimmedString() {
+        int start = 0;
+        int end = length;
+        while (start < end && (data[start] & 0xff) <= ' ') start++;
+        while (end > start && (data[end - 1] & 0xff) <= ' ') end--;
+        return new String(data, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * 清空内容以便复用；容量过大时收缩回初始大小
+     */
+    public void reset() {
+        length = 0;
+        if (data.length > MAX_RETAINED_CAPACITY) {
+            data = new byte[INITIAL_CAPACITY];
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.AdbService;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * 平台抽象：连接/执行引擎（{@link AdbToolSingleton}、{@link AdbConnectionManager} 及各功能类）
+ * 只通过该接口接触宿主环境，不直接调用 android.*：App 内使用 {@link AndroidAdbPlatform}，
+ * 普通 JVM 上可尝试 {@link JvmAdbPlatform}（仍需 libadb 等依赖的 jar，未实际运行验证，属实验性）。
+ */
+public interface AdbPlatform {
+
+    // ============== 回调分发 ==============
+    /**
+     * 把结果回调投递到宿主约定的线程（Android 为主线程）
+     */
+    void dispatchCallback(@NonNull Runnable callback);
+
+    // ============== 存储 ==============
+    /**
+     * 引擎私有数据目录（自适应超时统计等）
+     */
+    @NonNull
+    File getFilesDir();
+
+    /**
+     * 读取密钥/证书原始字节，不存在时返回 null；持久化格式由平台决定
+     */
+    @Nullable
+    byte[] readKeyBlob(@NonNull String name) throws IOException;
+
+    void writeKeyBlob(@NonNull String name, @NonNull byte[] data) throws IOException;
+
+    // ============== 设备信息 ==============
+    /**
+     * 本机 API 级别（传给 libadb 选择协议特性）
+     */
+    int getApiLevel();
+
+    /**
+     * 本机型号，用于组成 ADB 连接时上报的设备名
+     */
+    @NonNull
+    String getDeviceModel();
+
+    /**
+     * 是否支持无线调试配对（Android 需 11 及以上）
+     */
+    boolean isPairingSupported();
+
+    // ============== 线程 ==============
+    /**
+     * 创建工作线程池
+     * @param maxThreads 线程数上限，<= 0 表示不限；平台可按自身线程模型忽略该上限（如虚拟线程）
+     */
+    @NonNull
+    ExecutorService newExecutor(int maxThreads);
+
+    /**
+     * 创建定时调度器（命令超时、单项采集超时等），调度的任务都很短，不应在其中执行阻塞操作
+     */
+    @NonNull
+    ScheduledExecutorService newScheduledExecutor();
+}
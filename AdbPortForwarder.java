@@ -0,0 +1,431 @@
+package com.AdbService;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Locale;
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.github.muntashirakon.adb.AbsAdbConnectionManager;
+import io.github.muntashirakon.adb.AdbStream;
+
+/**
+ * 本地 TCP 端口转发：监听 127.0.0.1:localPort，每个接入连接打开一个 ADB 流
+ * （tcp:端口 / localabstract:名称）并双向转发。
+ * - 本地 socket 一侧由单个 Selector 线程驱动，所有连接共用，选择器线程永不阻塞
+ * - ADB 流一侧是阻塞 API，写设备放到工作线程执行，读设备每个连接一个工作线程；
+ *   同时存在的连接数有上限，工作线程数不会随接入连接无限增长
+ * - 准入控制只约束"打开设备流"这一步（限流打开速率、参与自适应），打开后立即归还名额；
+ *   长连接（如 keep-alive）不长期占用名额，不会把同设备上的普通命令挤到"设备繁忙"
+ * - 每个方向同一时刻最多一块在途数据，缓冲区按连接复用，天然具备背压
+ * - 连接状态用 ReentrantLock/Condition 而非 synchronized/wait 保护，工作线程是虚拟线程时等待不会钉住载体线程
+ * - 本地客户端关闭写方向（EOF）后只停止读本地，设备返回的数据照常转发，直到设备流结束
+ */
+public class AdbPortForwarder implements Closeable {
+    // 每个方向的中转块大小（与 ADB 默认 maxdata 对齐）
+    private static final int CHUNK_SIZE = 64 * 1024;
+    // 同时存在的连接上限（含正在打开设备流的连接），超出的接入直接关闭
+    private static final int MAX_CONNECTIONS = 32;
+    // 打开设备流前等待准入名额的时间
+    private static final long ADMISSION_WAIT_MILLIS = 10000;
+
+    private final AbsAdbConnectionManager connectionManager;
+    @Nullable
+    private final AdbAdmissionController admissionController;
+    private final int localPort;
+    private final String remoteService;
+    private final ExecutorService workerExecutor;
+
+    private ServerSocketChannel serverChannel;
+    private Selector selector;
+    private Thread selectorThread;
+    private volatile boolean running = false;
+    // 一旦 close() 过就不能再 start()：启动是异步的，先取消再启动时保证转发不会复活
+    private boolean closed = false;
+    // 其他线程对 SelectionKey 的修改统一投递到选择器线程执行
+    private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+    // 已接入且未关闭的连接（包括还在打开设备流、等待注册的），停止时逐个关闭
+    private final Set<Connection> openConnections = ConcurrentHashMap.newKeySet();
+
+    // 统计
+    private final long startTimeMillis = System.currentTimeMillis();
+    private final AtomicLong bytesToDevice = new AtomicLong();
+    private final AtomicLong bytesFromDevice = new AtomicLong();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final AtomicLong totalConnections = new AtomicLong();
+    private final AtomicLong failedConnections = new AtomicLong();
+
+    /** 单个转发连接：本地 socket + ADB 流，以及两个方向各自复用的缓冲区 */
+    private final class Connection {
+        final SocketChannel channel;
+        AdbStream stream;
+        OutputStream toDevice;
+        SelectionKey key;
+        // 本地 → 设备：选择器线程读入，工作线程写出
+        final ByteBuffer upBuffer = ByteBuffer.allocate(CHUNK_SIZE);
+        // 设备 → 本地：工作线程读入，选择器线程写出
+        final ByteBuffer downBuffer = ByteBuffer.allocate(CHUNK_SIZE);
+        // 保护 stream / downPending / closed 的状态转换；downDrained 在下行块写完或连接关闭时唤醒读设备线程
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition downDrained = lock.newCondition();
+        boolean downPending = false;
+        // 本地客户端已关闭写方向，不再读本地
+        boolean localEof = false;
+        volatile boolean closed = false;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    public AdbPortForwarder(@NonNull AbsAdbConnectionManager connectionManager,
+                            @Nullable AdbAdmissionController admissionController, int localPort,
+                            @NonNull String remoteService, @NonNull ExecutorService workerExecutor) {
+        this.connectionManager = connectionManager;
+        this.admissionController = admissionController;
+        this.localPort = localPort;
+        this.remoteService = remoteService;
+        this.workerExecutor = workerExecutor;
+    }
+
+    /**
+     * 校验远端服务格式：tcp:端口 或 localabstract:名称
+     */
+    public static boolean isValidRemoteService(String remoteService) {
+        if (remoteService == null) return false;
+        if (remoteService.startsWith("tcp:")) {
+            try {
+                int port = Integer.parseInt(remoteService.substring(4));
+                return port >= 1 && port <= 65535;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return remoteService.startsWith("localabstract:")
+                && remoteService.length() > "localabstract:".length()
+                && !remoteService.contains(" ");
+    }
+
+    // ============== 生命周期 ==============
+    public synchronized void start() throws IOException {
+        if (closed) {
+            throw new IOException("端口转发已取消");
+        }
+        if (running) return;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(new InetSocketAddress("127.0.0.1", localPort));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+        running = true;
+        selectorThread = new Thread(this::selectorLoop, "ADB_Forward_" + localPort);
+        selectorThread.start();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (!running) return;
+        running = false;
+        selector.wakeup();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // ============== 选择器线程 ==============
+    private void selectorLoop() {
+        try {
+            while (running) {
+                selector.select();
+                Runnable task;
+                while ((task = selectorTasks.poll()) != null) {
+                    task.run();
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        onAcceptable();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            onReadable(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            onWritable(connection);
+                        }
+                    } catch (IOException e) {
+                        closeConnection(connection);
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            // 未执行的注册任务直接丢弃，其连接与已注册的连接一起在这里关闭
+            selectorTasks.clear();
+            for (Connection connection : new ArrayList<>(openConnections)) {
+                closeConnection(connection);
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void onAcceptable() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            totalConnections.incrementAndGet();
+            if (openConnections.size() >= MAX_CONNECTIONS) {
+                failedConnections.incrementAndGet();
+                channel.close();
+                continue;
+            }
+            channel.configureBlocking(false);
+            final Connection connection = new Connection(channel);
+            openConnections.add(connection);
+            // openStream 是阻塞调用，放到工作线程，完成后再回到选择器线程注册
+            workerExecutor.execute(() -> openDeviceStream(connection));
+        }
+    }
+
+    private void openDeviceStream(@NonNull Connection connection) {
+        try {
+            AdbStream stream = openStreamAdmitted();
+            if (stream == null) {
+                throw new IOException("无法打开 ADB 流 " + remoteService);
+            }
+            boolean closedMeanwhile;
+            connection.lock.lock();
+            try {
+                closedMeanwhile = connection.closed;
+                if (!closedMeanwhile) {
+                    connection.stream = stream;
+                    activeConnections.incrementAndGet();
+                }
+            } finally {
+                connection.lock.unlock();
+            }
+            if (closedMeanwhile) {
+                // 等待准入或打开期间转发已停止，closeConnection 已执行过，这里补关新打开的流
+                stream.close();
+                return;
+            }
+            connection.toDevice = stream.openOutputStream();
+            final InputStream fromDevice = stream.openInputStream();
+            runOnSelector(() -> {
+                try {
+                    if (connection.closed) return;
+                    connection.key = connection.channel.register(selector, SelectionKey.OP_READ, connection);
+                    workerExecutor.execute(() -> pumpFromDevice(connection, fromDevice));
+                } catch (IOException e) {
+                    closeConnection(connection);
+                }
+            });
+        } catch (Exception e) {
+            failedConnections.incrementAndGet();
+            closeConnection(connection);
+        }
+    }
+
+    /**
+     * 获得准入名额后打开设备流，打开完成（无论成败）即归还名额；打开失败返回 null
+     */
+    @Nullable
+    private AdbStream openStreamAdmitted() throws Exception {
+        if (admissionController != null && !admissionController.tryAcquire(ADMISSION_WAIT_MILLIS)) {
+            throw new IOException("设备繁忙，未获得转发名额");
+        }
+        boolean opened = false;
+        long openStart = System.currentTimeMillis();
+        try {
+            AdbStream stream = connectionManager.openStream(remoteService);
+            opened = stream != null && !stream.isClosed();
+            return opened ? stream : null;
+        } finally {
+            if (admissionController != null) {
+                admissionController.recordOpenResult(opened, System.currentTimeMillis() - openStart);
+                admissionController.release();
+            }
+        }
+    }
+
+    // 本地 → 设备：读一块后暂停 OP_READ，写完设备再恢复（背压）
+    private void onReadable(@NonNull Connection connection) throws IOException {
+        int read = connection.channel.read(connection.upBuffer);
+        if (read < 0) {
+            // 半关闭：OP_READ 期间没有在途的上行写，只需停止读本地；
+            // 设备 → 本地方向继续，由设备流结束或本地写失败触发关闭
+            connection.localEof = true;
+            connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_READ);
+            return;
+        }
+        if (read == 0) return;
+        connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_READ);
+        workerExecutor.execute(() -> {
+            try {
+                ByteBuffer buffer = connection.upBuffer;
+                // 堆缓冲区可直接把底层数组交给 ADB 流，不额外拷贝
+                connection.toDevice.write(buffer.array(), 0, buffer.position());
+                connection.toDevice.flush();
+                bytesToDevice.addAndGet(buffer.position());
+                buffer.clear();
+                runOnSelector(() -> {
+                    if (connection.key.isValid() && !connection.localEof) {
+                        connection.key.interestOps(connection.key.interestOps() | SelectionKey.OP_READ);
+                    }
+                });
+            } catch (IOException e) {
+                runOnSelector(() -> closeConnection(connection));
+            }
+        });
+    }
+
+    // 设备 → 本地：工作线程阻塞读设备，交给选择器线程写 socket，写完前不再读下一块
+    private void pumpFromDevice(@NonNull Connection connection, @NonNull InputStream fromDevice) {
+        try {
+            while (running) {
+                ByteBuffer buffer = connection.downBuffer;
+                int read = fromDevice.read(buffer.array(), 0, buffer.capacity());
+                if (read < 0) break;
+                if (read == 0) continue;
+                buffer.position(0).limit(read);
+                bytesFromDevice.addAndGet(read);
+                connection.lock.lock();
+                try {
+                    if (connection.closed) return;
+                    connection.downPending = true;
+                } finally {
+                    connection.lock.unlock();
+                }
+                runOnSelector(() -> {
+                    if (connection.key.isValid()) {
+                        connection.key.interestOps(connection.key.interestOps() | SelectionKey.OP_WRITE);
+                    }
+                });
+                connection.lock.lock();
+                try {
+                    while (connection.downPending && !connection.closed) {
+                        connection.downDrained.await();
+                    }
+                    if (connection.closed) return;
+                } finally {
+                    connection.lock.unlock();
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // 流被关闭或线程被中断，走统一关闭流程
+        }
+        runOnSelector(() -> closeConnection(connection));
+    }
+
+    private void onWritable(@NonNull Connection connection) throws IOException {
+        connection.channel.write(connection.downBuffer);
+        if (connection.downBuffer.hasRemaining()) return;
+        connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_WRITE);
+        connection.downBuffer.clear();
+        connection.lock.lock();
+        try {
+            connection.downPending = false;
+            connection.downDrained.signalAll();
+        } finally {
+            connection.lock.unlock();
+        }
+    }
+
+    private void closeConnection(@NonNull Connection connection) {
+        connection.lock.lock();
+        try {
+            if (connection.closed) return;
+            connection.closed = true;
+            connection.downDrained.signalAll();
+        } finally {
+            connection.lock.unlock();
+        }
+        openConnections.remove(connection);
+        if (connection.key != null) {
+            connection.key.cancel();
+        }
+        try {
+            connection.channel.close();
+        } catch (IOException ignored) {
+        }
+        if (connection.stream != null) {
+            activeConnections.decrementAndGet();
+            try {
+                connection.stream.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void runOnSelector(@NonNull Runnable task) {
+        selectorTasks.add(task);
+        selector.wakeup();
+    }
+
+    // ============== 统计查询 ==============
+    public int getLocalPort() {
+        return localPort;
+    }
+
+    @NonNull
+    public String getRemoteService() {
+        return remoteService;
+    }
+
+    public long getBytesToDevice() {
+        return bytesToDevice.get();
+    }
+
+    public long getBytesFromDevice() {
+        return bytesFromDevice.get();
+    }
+
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    @NonNull
+    public String getStatsSummary() {
+        double seconds = Math.max(0.001, (System.currentTimeMillis() - startTimeMillis) / 1000.0);
+        return String.format(Locale.ROOT,
+                "127.0.0.1:%d → %s：活动连接 %d，累计连接 %d（失败 %d），上行 %d 字节（%.1f KB/s），下行 %d 字节（%.1f KB/s）",
+                localPort, remoteService, activeConnections.get(), totalConnections.get(), failedConnections.get(),
+                bytesToDevice.get(), bytesToDevice.get() / 1024.0 / seconds,
+                bytesFromDevice.get(), bytesFromDevice.get() / 1024.0 / seconds);
+    }
+}
@@ -0,0 +1,254 @@
+package com.AdbService;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 无线调试端口扫描器：Android 11+ 每次开关无线调试都会更换连接端口，
+ * 这里用 NIO 非阻塞 connect 同时发起大量探测，并对建连成功的端口发送 ADB CNXN 握手，
+ * 只有收到合法 ADB 报文头（CNXN / AUTH / STLS）的端口才视为 adbd。
+ * 纯 Java 实现，不依赖 Android API，可直接对本地模拟 adbd 测试。
+ */
+public class AdbPortScanner {
+    // 无线调试端口的常见分配区间
+    public static final int DEFAULT_START_PORT = 30000;
+    public static final int DEFAULT_END_PORT = 50000;
+
+    // ADB 协议常量（与 adb/protocol.txt 一致，小端序）
+    static final int A_CNXN = 0x4e584e43;
+    static final int A_AUTH = 0x48545541;
+    static final int A_STLS = 0x534c5453;
+    private static final int A_VERSION = 0x01000001;
+    private static final int MAX_PAYLOAD = 1024 * 1024;
+    static final int HEADER_LENGTH = 24;
+    private static final byte[] CNXN_PAYLOAD = "host::\0".getBytes(StandardCharsets.US_ASCII);
+
+    // 同时在途的探测数量（受进程 fd 上限约束，不宜过大）
+    private int maxInFlight = 512;
+    // 单个端口 TCP 建连超时
+    private int connectTimeoutMs = 300;
+    // CNXN 握手应答超时
+    private int verifyTimeoutMs = 1000;
+
+    /** 扫描结果：port 为 -1 表示区间内未找到 adbd */
+    public static class ScanResult {
+        public final int port;
+        public final int probedPorts;
+        public final int openPorts;
+        public final long elapsedMillis;
+
+        ScanResult(int port, int probedPorts, int openPorts, long elapsedMillis) {
+            this.port = port;
+            this.probedPorts = probedPorts;
+            this.openPorts = openPorts;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public boolean isFound() {
+            return port > 0;
+        }
+    }
+
+    // 单个端口的探测状态（挂在 SelectionKey 的 attachment 上）
+    private static class Probe {
+        final int port;
+        long deadline;
+        ByteBuffer buffer;
+
+        Probe(int port, long deadline) {
+            this.port = port;
+            this.deadline = deadline;
+        }
+    }
+
+    // ============== 配置接口 ==============
+    public void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight > 0) {
+            this.maxInFlight = maxInFlight;
+        }
+    }
+
+    public void setConnectTimeoutMs(int connectTimeoutMs) {
+        if (connectTimeoutMs > 0) {
+            this.connectTimeoutMs = connectTimeoutMs;
+        }
+    }
+
+    public void setVerifyTimeoutMs(int verifyTimeoutMs) {
+        if (verifyTimeoutMs > 0) {
+            this.verifyTimeoutMs = verifyTimeoutMs;
+        }
+    }
+
+    // ============== 核心：并发扫描 ==============
+    /**
+     * 扫描 [startPort, endPort] 区间，返回第一个通过 CNXN 校验的端口
+     */
+    @NonNull
+    public ScanResult scan(@NonNull String host, int startPort, int endPort) throws IOException {
+        if (startPort < 1 || endPort > 65535 || startPort > endPort) {
+            throw new IllegalArgumentException("端口区间非法：" + startPort + "-" + endPort);
+        }
+        long startTime = System.currentTimeMillis();
+        // 只解析一次地址，避免每个端口重复 DNS 查询
+        InetAddress address = InetAddress.getByName(host);
+        byte[] cnxnPacket = buildCnxnPacket();
+
+        int nextPort = startPort;
+        int inFlight = 0;
+        int probed = 0;
+        int open = 0;
+        int foundPort = -1;
+
+        try (Selector selector = Selector.open()) {
+            while (foundPort < 0 && (nextPort <= endPort || inFlight > 0)) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+
+                // 1. 补满在途探测
+                while (nextPort <= endPort && inFlight < maxInFlight) {
+                    int port = nextPort++;
+                    probed++;
+                    SocketChannel channel = SocketChannel.open();
+                    try {
+                        channel.configureBlocking(false);
+                        Probe probe = new Probe(port, System.currentTimeMillis() + connectTimeoutMs);
+                        if (channel.connect(new InetSocketAddress(address, port))) {
+                            // 本地回环可能立即建连成功
+                            rejectSelfConnect(channel);
+                            open++;
+                            startVerify(channel.register(selector, 0, probe), probe, cnxnPacket);
+                        } else {
+                            channel.register(selector, SelectionKey.OP_CONNECT, probe);
+                        }
+                        inFlight++;
+                    } catch (IOException e) {
+                        closeQuietly(channel);
+                    }
+                }
+
+                // 2. 处理就绪事件
+                selector.select(50);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    Probe probe = (Probe) key.attachment();
+                    SocketChannel channel = (SocketChannel) key.channel();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isConnectable()) {
+                            channel.finishConnect();
+                            rejectSelfConnect(channel);
+                            open++;
+                            startVerify(key, probe, cnxnPacket);
+                        } else if (key.isWritable()) {
+                            channel.write(probe.buffer);
+                            if (!probe.buffer.hasRemaining()) {
+                                probe.buffer = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+                                key.interestOps(SelectionKey.OP_READ);
+                            }
+                        } else if (key.isReadable()) {
+                            if (channel.read(probe.buffer) < 0) {
+                                throw new IOException("对端关闭连接");
+                            }
+                            if (!probe.buffer.hasRemaining()) {
+                                if (isAdbHeader(probe.buffer)) {
+                                    foundPort = probe.port;
+                                    break;
+                                }
+                                throw new IOException("非 ADB 应答");
+                            }
+                        }
+                    } catch (IOException e) {
+                        key.cancel();
+                        closeQuietly(channel);
+                        inFlight--;
+                    }
+                }
+                selector.selectedKeys().clear();
+
+                // 3. 清理超时探测
+                long now = System.currentTimeMillis();
+                for (SelectionKey key : selector.keys()) {
+                    Probe probe = (Probe) key.attachment();
+                    if (key.isValid() && now > probe.deadline) {
+                        key.cancel();
+                        closeQuietly(key.channel());
+                        inFlight--;
+                    }
+                }
+            }
+
+            // 关闭剩余通道
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key.channel());
+            }
+        }
+
+        return new ScanResult(foundPort, probed, open, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 扫描本机时，目标端口落在临时端口区间内可能发生 TCP 自连接（源端口 == 目标端口），
+     * 此时读回的是自己发出的 CNXN 报文，必须排除
+     */
+    private static void rejectSelfConnect(@NonNull SocketChannel channel) throws IOException {
+        if (channel.getLocalAddress().equals(channel.getRemoteAddress())) {
+            throw new IOException("TCP 自连接");
+        }
+    }
+
+    // 建连成功后切换到写 CNXN 阶段，并刷新超时截止时间
+    private void startVerify(SelectionKey key, Probe probe, byte[] cnxnPacket) {
+        probe.deadline = System.currentTimeMillis() + verifyTimeoutMs;
+        probe.buffer = ByteBuffer.wrap(cnxnPacket);
+        key.interestOps(SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * 校验 24 字节报文头：命令字合法且 magic == command ^ 0xffffffff
+     */
+    static boolean isAdbHeader(@NonNull ByteBuffer header) {
+        header.flip();
+        int command = header.getInt(0);
+        int magic = header.getInt(20);
+        if (magic != ~command) {
+            return false;
+        }
+        return command == A_CNXN || command == A_AUTH || command == A_STLS;
+    }
+
+    static byte[] buildCnxnPacket() {
+        ByteBuffer packet = ByteBuffer.allocate(HEADER_LENGTH + CNXN_PAYLOAD.length).order(ByteOrder.LITTLE_ENDIAN);
+        int checksum = 0;
+        for (byte b : CNXN_PAYLOAD) {
+            checksum += b & 0xff;
+        }
+        packet.putInt(A_CNXN)
+                .putInt(A_VERSION)
+                .putInt(MAX_PAYLOAD)
+                .putInt(CNXN_PAYLOAD.length)
+                .putInt(checksum)
+                .putInt(~A_CNXN)
+                .put(CNXN_PAYLOAD);
+        return packet.array();
+    }
+
+    private static void closeQuietly(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
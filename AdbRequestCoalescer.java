@@ -0,0 +1,64 @@
+package com.AdbService;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 请求合并（single-flight）：同一设备上相同的只读命令正在执行时，后来的调用方直接挂到
+ * 已在途的执行上，完成后所有调用方收到同一份结果。只合并并发的重复请求，完成即移除，不缓存结果。
+ * @param <C> 回调类型
+ */
+public class AdbRequestCoalescer<C> {
+    // key -> 等待结果的回调列表（第一个为发起执行的调用方）
+    private final Map<String, List<C>> inFlightCalls = new HashMap<>();
+
+    // 统计
+    private long executionCount = 0;
+    private long coalescedCount = 0;
+
+    /**
+     * 加入一次调用
+     * @return true 表示当前没有相同的在途请求，调用方需要真正发起执行；
+     *         false 表示已挂到在途请求上，等待 {@link #complete(String)} 分发结果
+     */
+    public synchronized boolean join(@NonNull String key, @NonNull C callback) {
+        List<C> waiters = inFlightCalls.get(key);
+        if (waiters != null) {
+            waiters.add(callback);
+            coalescedCount++;
+            return false;
+        }
+        waiters = new ArrayList<>();
+        waiters.add(callback);
+        inFlightCalls.put(key, waiters);
+        executionCount++;
+        return true;
+    }
+
+    /**
+     * 执行结束：移除在途记录并返回所有需要通知的回调（之后的相同请求会重新执行）
+     */
+    @NonNull
+    public synchronized List<C> complete(@NonNull String key) {
+        List<C> waiters = inFlightCalls.remove(key);
+        return waiters == null ? Collections.<C>emptyList() : waiters;
+    }
+
+    public synchronized int getInFlightCount() {
+        return inFlightCalls.size();
+    }
+
+    public synchronized long getExecutionCount() {
+        return executionCount;
+    }
+
+    /** 被合并、因而节省掉的执行次数 */
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+}
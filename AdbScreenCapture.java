@@ -0,0 +1,560 @@
+package com.AdbService;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.github.muntashirakon.adb.AbsAdbConnectionManager;
+import io.github.muntashirakon.adb.AdbStream;
+
+/**
+ * 连续截屏流水线：按目标帧率采集屏幕，帧数据（编码后的 PNG / H.264）放入环形缓冲区。
+ * - PNG 模式：每帧一次 exec:screencap -p（二进制安全），采集跟不上或准入控制拒绝时直接丢帧，不排队
+ * - H264 模式：一条 exec:screenrecord --output-format=h264 - 长流，按 NAL 起始码切分为帧，适合高帧率；
+ *   每个 IDR 帧前都带上最近的 SPS/PPS，任意关键帧开始的片段都能独立解码
+ * 两种模式的设备流都经过准入控制：流在传输数据期间占用一个名额，结束即归还；
+ * 录屏流拿不到名额时稍后重试。
+ * 环形缓冲区同时受帧数与字节数约束，任一超限都淘汰最旧的帧。提供最新帧和按时间窗口导出接口。
+ */
+public class AdbScreenCapture {
+    public enum Mode {
+        SCREENCAP_PNG,
+        SCREENRECORD_H264
+    }
+
+    // screenrecord 单次最长 180 秒，结束后自动重开
+    private static final String SCREENRECORD_SERVICE = "exec:screenrecord --output-format=h264 --time-limit 180 -";
+    private static final String SCREENCAP_SERVICE = "exec:screencap -p";
+    private static final int READ_CHUNK_SIZE = 64 * 1024;
+    private static final int NAL_TYPE_SLICE = 1;
+    private static final int NAL_TYPE_IDR = 5;
+    private static final int NAL_TYPE_SPS = 7;
+    private static final int NAL_TYPE_PPS = 8;
+    // 录屏流等待准入名额的时间，拿不到时隔一秒重试
+    private static final long RECORD_ADMISSION_WAIT_MILLIS = 1000;
+    /** 环形缓冲区默认字节上限 */
+    public static final long DEFAULT_MAX_BUFFER_BYTES = 64L * 1024 * 1024;
+
+    /** 一帧数据 */
+    public static class Frame {
+        public final long sequence;
+        // 帧完成时间（System.currentTimeMillis）
+        public final long timestampMillis;
+        // PNG：请求到数据读完的耗时；H264 为 -1（裸流不带采集时间戳，无法测量单帧采集延迟）
+        public final long latencyMillis;
+        // 与上一帧完成时间的间隔，第一帧为 0
+        public final long intervalMillis;
+        // H264 关键帧（IDR，已带上 SPS/PPS），PNG 帧恒为 true
+        public final boolean keyFrame;
+        public final byte[] data;
+
+        Frame(long sequence, long timestampMillis, long latencyMillis, long intervalMillis,
+              boolean keyFrame, byte[] data) {
+            this.sequence = sequence;
+            this.timestampMillis = timestampMillis;
+            this.latencyMillis = latencyMillis;
+            this.intervalMillis = intervalMillis;
+            this.keyFrame = keyFrame;
+            this.data = data;
+        }
+    }
+
+    private final AbsAdbConnectionManager connectionManager;
+    @Nullable
+    private final AdbAdmissionController admissionController;
+    private final Mode mode;
+    private final int targetFps;
+
+    // 环形缓冲区
+    private final Frame[] ring;
+    private final long maxBufferBytes;
+    private int ringHead = 0;
+    private int ringSize = 0;
+    private long bufferedBytes = 0;
+
+    private volatile boolean running = false;
+    private Thread captureThread;
+    private volatile AdbStream recordStream;
+    // 最近一次收到的 SPS / PPS（含起始码），只在采集线程读写
+    @Nullable
+    private byte[] lastSps;
+    @Nullable
+    private byte[] lastPps;
+    private long lastFrameMillis = 0;
+
+    // 统计
+    private long startTimeMillis;
+    private final AtomicLong capturedFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong latencySamples = new AtomicLong();
+    private final AtomicLong totalLatencyMillis = new AtomicLong();
+    private final AtomicLong maxLatencyMillis = new AtomicLong();
+    private final AtomicLong totalIntervalMillis = new AtomicLong();
+    private final AtomicLong maxIntervalMillis = new AtomicLong();
+
+    /**
+     * @param ringCapacity   环形缓冲区帧数上限
+     * @param maxBufferBytes 环形缓冲区字节数上限（至少保留最新一帧）
+     */
+    public AdbScreenCapture(@NonNull AbsAdbConnectionManager connectionManager,
+                            @Nullable AdbAdmissionController admissionController,
+                            @NonNull Mode mode, int targetFps, int ringCapacity, long maxBufferBytes) {
+        this.connectionManager = connectionManager;
+        this.admissionController = admissionController;
+        this.mode = mode;
+        this.targetFps = Math.max(1, targetFps);
+        this.ring = new Frame[Math.max(1, ringCapacity)];
+        this.maxBufferBytes = maxBufferBytes > 0 ? maxBufferBytes : DEFAULT_MAX_BUFFER_BYTES;
+    }
+
+    // ============== 生命周期 ==============
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        startTimeMillis = System.currentTimeMillis();
+        captureThread = new Thread(mode == Mode.SCREENCAP_PNG ? this::screencapLoop : this::screenrecordLoop,
+                "ADB_Screen_Capture");
+        captureThread.start();
+    }
+
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        AdbStream stream = recordStream;
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+            }
+        }
+        captureThread.interrupt();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // ============== PNG 模式：定时单帧截屏 ==============
+    private void screencapLoop() {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / targetFps;
+        long nextSlot = System.nanoTime();
+        long sequence = 0;
+        ByteArrayOutputStream frameBuffer = new ByteArrayOutputStream(READ_CHUNK_SIZE);
+        byte[] chunk = new byte[READ_CHUNK_SIZE];
+
+        while (running) {
+            long captureStart = System.nanoTime();
+            boolean admitted = admissionController == null;
+            try {
+                if (admissionController != null) {
+                    // 不等待：设备忙时直接丢掉本帧
+                    admitted = admissionController.tryAcquire(0);
+                }
+                if (admitted) {
+                    frameBuffer.reset();
+                    readStream(SCREENCAP_SERVICE, frameBuffer, chunk, captureStart);
+                    long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - captureStart);
+                    if (frameBuffer.size() > 0) {
+                        addFrame(sequence++, latency, true, frameBuffer.toByteArray());
+                        recordMax(totalLatencyMillis, maxLatencyMillis, latency);
+                        latencySamples.incrementAndGet();
+                    }
+                } else {
+                    droppedFrames.incrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                if (running) e.printStackTrace();
+            } finally {
+                if (admitted && admissionController != null) {
+                    admissionController.release();
+                }
+            }
+
+            // 采集耗时超过帧间隔时，跳过错过的时间片并计为丢帧，而不是积压补采
+            nextSlot += intervalNanos;
+            long now = System.nanoTime();
+            if (now > nextSlot) {
+                long missedSlots = (now - nextSlot) / intervalNanos;
+                droppedFrames.addAndGet(missedSlots);
+                nextSlot += (missedSlots + 1) * intervalNanos;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(nextSlot - System.nanoTime());
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    private void readStream(@NonNull String service, @NonNull ByteArrayOutputStream target,
+                            @NonNull byte[] chunk, long openStartNanos) throws Exception {
+        AdbStream stream = openStream(service, openStartNanos);
+        try {
+            InputStream inputStream = stream.openInputStream();
+            int read;
+            while ((read = inputStream.read(chunk, 0, chunk.length)) >= 0) {
+                target.write(chunk, 0, read);
+            }
+        } catch (IOException e) {
+            // 远端关闭后读取抛出的 Stream closed 视为正常结束，不丢掉已读完的帧
+            if (!AdbOutputBuffer.isStreamClosed(e)) throw e;
+        } finally {
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * 打开设备流并把打开结果计入准入控制（名额由调用方获取与归还）
+     */
+    @NonNull
+    private AdbStream openStream(@NonNull String service, long openStartNanos) throws Exception {
+        AdbStream stream;
+        try {
+            stream = connectionManager.openStream(service);
+        } catch (Exception e) {
+            if (admissionController != null) {
+                admissionController.recordOpenResult(false,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - openStartNanos));
+            }
+            throw e;
+        }
+        boolean opened = stream != null && !stream.isClosed();
+        if (admissionController != null) {
+            admissionController.recordOpenResult(opened,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - openStartNanos));
+        }
+        if (!opened) {
+            throw new IOException("无法打开截屏流：" + service);
+        }
+        return stream;
+    }
+
+    // ============== H264 模式：长流按 NAL 单元切帧 ==============
+    private void screenrecordLoop() {
+        long sequence = 0;
+        byte[] chunk = new byte[READ_CHUNK_SIZE];
+        while (running) {
+            AdbStream stream = null;
+            boolean admitted = admissionController == null;
+            try {
+                if (admissionController != null) {
+                    // 录屏流持续占用设备编码与带宽，与 PNG 单帧流一样在传输期间占用名额
+                    admitted = admissionController.tryAcquire(RECORD_ADMISSION_WAIT_MILLIS);
+                    if (!admitted) {
+                        throw new IOException("设备繁忙，暂未获得录屏名额");
+                    }
+                }
+                stream = openStream(SCREENRECORD_SERVICE, System.nanoTime());
+                recordStream = stream;
+                sequence = pumpH264(stream.openInputStream(), chunk, sequence);
+            } catch (Exception e) {
+                if (running) e.printStackTrace();
+                try {
+                    TimeUnit.SECONDS.sleep(1);
+                } catch (InterruptedException interrupted) {
+                    break;
+                }
+            } finally {
+                recordStream = null;
+                if (stream != null) {
+                    try {
+                        stream.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+                if (admitted && admissionController != null) {
+                    admissionController.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * 读取裸 H.264 流并按 NAL 切帧。待处理数据放在可增长的数组中原地扫描，
+     * 已扫描过的位置不重复扫描，只在切出 NAL 后把剩余的未完成部分移到数组开头
+     */
+    private long pumpH264(@NonNull InputStream inputStream, @NonNull byte[] chunk, long sequence) throws IOException {
+        byte[] pending = new byte[READ_CHUNK_SIZE * 2];
+        int pendingLength = 0;
+        // 当前 NAL 起始码位置，-1 表示尚未找到第一个起始码
+        int nalStart = -1;
+        int scanFrom = 0;
+        // SEI / AUD 等非图像 NAL 暂存，拼到下一帧前面；SPS/PPS 单独保存
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        int read;
+        while (running && (read = inputStream.read(chunk, 0, chunk.length)) >= 0) {
+            if (pendingLength + read > pending.length) {
+                byte[] grown = new byte[Math.max(pending.length * 2, pendingLength + read)];
+                System.arraycopy(pending, 0, grown, 0, pendingLength);
+                pending = grown;
+            }
+            System.arraycopy(chunk, 0, pending, pendingLength, read);
+            pendingLength += read;
+
+            if (nalStart < 0) {
+                nalStart = findStartCode(pending, scanFrom, pendingLength);
+                if (nalStart < 0) {
+                    // 起始码之前的数据无法解码，只保留可能跨块的末尾字节
+                    int keep = Math.min(pendingLength, 3);
+                    System.arraycopy(pending, pendingLength - keep, pending, 0, keep);
+                    pendingLength = keep;
+                    scanFrom = 0;
+                    continue;
+                }
+                scanFrom = nalStart + 3;
+            }
+            int nextStart;
+            while ((nextStart = findStartCode(pending, Math.max(scanFrom, nalStart + 3), pendingLength)) >= 0) {
+                sequence = onNal(pending, nalStart, nextStart, header, sequence);
+                nalStart = nextStart;
+                scanFrom = nextStart + 3;
+            }
+            // 末尾 3 字节可能是被截断的起始码，下次从这里继续扫描
+            scanFrom = Math.max(nalStart + 3, pendingLength - 3);
+            if (nalStart > 0) {
+                System.arraycopy(pending, nalStart, pending, 0, pendingLength - nalStart);
+                pendingLength -= nalStart;
+                scanFrom -= nalStart;
+                nalStart = 0;
+            }
+        }
+        return sequence;
+    }
+
+    private long onNal(@NonNull byte[] data, int start, int end, @NonNull ByteArrayOutputStream header,
+                       long sequence) {
+        int nalType = data[start + startCodeLength(data, start)] & 0x1f;
+        switch (nalType) {
+            case NAL_TYPE_SPS:
+                lastSps = copyOfRange(data, start, end);
+                return sequence;
+            case NAL_TYPE_PPS:
+                lastPps = copyOfRange(data, start, end);
+                return sequence;
+            case NAL_TYPE_SLICE:
+            case NAL_TYPE_IDR:
+                boolean keyFrame = nalType == NAL_TYPE_IDR;
+                if (keyFrame) {
+                    if (lastSps == null || lastPps == null) {
+                        // 还没收到参数集，这个关键帧无法解码
+                        header.reset();
+                        droppedFrames.incrementAndGet();
+                        return sequence;
+                    }
+                    byte[] frameData = new byte[lastSps.length + lastPps.length + header.size() + end - start];
+                    int offset = 0;
+                    System.arraycopy(lastSps, 0, frameData, offset, lastSps.length);
+                    offset += lastSps.length;
+                    System.arraycopy(lastPps, 0, frameData, offset, lastPps.length);
+                    offset += lastPps.length;
+                    byte[] headerData = header.toByteArray();
+                    System.arraycopy(headerData, 0, frameData, offset, headerData.length);
+                    offset += headerData.length;
+                    System.arraycopy(data, start, frameData, offset, end - start);
+                    addFrame(sequence, -1, true, frameData);
+                } else if (header.size() > 0) {
+                    header.write(data, start, end - start);
+                    addFrame(sequence, -1, false, header.toByteArray());
+                } else {
+                    addFrame(sequence, -1, false, copyOfRange(data, start, end));
+                }
+                header.reset();
+                return sequence + 1;
+            default:
+                header.write(data, start, end - start);
+                return sequence;
+        }
+    }
+
+    @NonNull
+    private static byte[] copyOfRange(@NonNull byte[] data, int start, int end) {
+        byte[] copy = new byte[end - start];
+        System.arraycopy(data, start, copy, 0, copy.length);
+        return copy;
+    }
+
+    // 在 [from, limit) 内查找 00 00 01 起始码（含 00 00 00 01 的情况），返回起始码第一个字节的位置
+    private static int findStartCode(@NonNull byte[] data, int from, int limit) {
+        for (int i = from; i + 2 < limit; i++) {
+            if (data[i] == 0 && data[i + 1] == 0 && data[i + 2] == 1) {
+                return (i > from && data[i - 1] == 0) ? i - 1 : i;
+            }
+        }
+        return -1;
+    }
+
+    private static int startCodeLength(@NonNull byte[] data, int start) {
+        return data[start + 2] == 1 ? 3 : 4;
+    }
+
+    // ============== 环形缓冲区 ==============
+    private void addFrame(long sequence, long latencyMillis, boolean keyFrame, @NonNull byte[] data) {
+        long now = System.currentTimeMillis();
+        long interval = lastFrameMillis == 0 ? 0 : now - lastFrameMillis;
+        lastFrameMillis = now;
+        if (sequence > 0) {
+            recordMax(totalIntervalMillis, maxIntervalMillis, interval);
+        }
+        addFrame(new Frame(sequence, now, latencyMillis, interval, keyFrame, data));
+    }
+
+    private synchronized void addFrame(@NonNull Frame frame) {
+        if (ringSize == ring.length) {
+            evictOldest();
+        }
+        ring[(ringHead + ringSize) % ring.length] = frame;
+        ringSize++;
+        bufferedBytes += frame.data.length;
+        // 字节超限时淘汰最旧的帧，最新一帧总是保留
+        while (bufferedBytes > maxBufferBytes && ringSize > 1) {
+            evictOldest();
+        }
+        capturedFrames.incrementAndGet();
+    }
+
+    private void evictOldest() {
+        bufferedBytes -= ring[ringHead].data.length;
+        ring[ringHead] = null;
+        ringHead = (ringHead + 1) % ring.length;
+        ringSize--;
+    }
+
+    private static void recordMax(@NonNull AtomicLong total, @NonNull AtomicLong maxValue, long value) {
+        total.addAndGet(value);
+        long max;
+        while (value > (max = maxValue.get()) && !maxValue.compareAndSet(max, value)) {
+            // CAS 重试
+        }
+    }
+
+    /**
+     * 最新一帧，缓冲区为空时返回 null
+     */
+    @Nullable
+    public synchronized Frame getLatestFrame() {
+        if (ringSize == 0) return null;
+        return ring[(ringHead + ringSize - 1) % ring.length];
+    }
+
+    /**
+     * 时间窗口内的帧（按时间顺序）；H264 模式下会向前扩展到最近的关键帧，保证导出内容可解码
+     */
+    @NonNull
+    public synchronized List<Frame> getFrames(long fromMillis, long toMillis) {
+        List<Frame> frames = new ArrayList<>();
+        int firstIndex = -1;
+        for (int i = 0; i < ringSize; i++) {
+            Frame frame = ring[(ringHead + i) % ring.length];
+            if (frame.timestampMillis >= fromMillis && frame.timestampMillis <= toMillis) {
+                firstIndex = i;
+                break;
+            }
+        }
+        if (firstIndex < 0) return frames;
+        while (firstIndex > 0 && !ring[(ringHead + firstIndex) % ring.length].keyFrame) {
+            firstIndex--;
+        }
+        // 往前已没有关键帧（被环形缓冲区覆盖），改为从窗口内第一个关键帧开始
+        while (firstIndex < ringSize && !ring[(ringHead + firstIndex) % ring.length].keyFrame) {
+            firstIndex++;
+        }
+        for (int i = firstIndex; i < ringSize; i++) {
+            Frame frame = ring[(ringHead + i) % ring.length];
+            if (frame.timestampMillis > toMillis) break;
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    /**
+     * 导出时间窗口内的帧：PNG 模式每帧一个文件，H264 模式拼成一个 .h264 裸流文件
+     * @return 导出的帧数
+     */
+    public int exportWindow(long fromMillis, long toMillis, @NonNull File outputDir) throws IOException {
+        List<Frame> frames = getFrames(fromMillis, toMillis);
+        if (!outputDir.exists() && !outputDir.mkdirs()) {
+            throw new IOException("无法创建导出目录：" + outputDir.getPath());
+        }
+        if (mode == Mode.SCREENCAP_PNG) {
+            for (Frame frame : frames) {
+                File file = new File(outputDir, String.format(Locale.ROOT, "frame_%06d_%d.png",
+                        frame.sequence, frame.timestampMillis));
+                try (OutputStream os = new FileOutputStream(file)) {
+                    os.write(frame.data);
+                }
+            }
+        } else if (!frames.isEmpty()) {
+            File file = new File(outputDir, String.format(Locale.ROOT, "capture_%d_%d.h264",
+                    frames.get(0).timestampMillis, frames.get(frames.size() - 1).timestampMillis));
+            try (OutputStream os = new FileOutputStream(file)) {
+                for (Frame frame : frames) {
+                    os.write(frame.data);
+                }
+            }
+        }
+        return frames.size();
+    }
+
+    // ============== 统计查询 ==============
+    public long getCapturedFrames() {
+        return capturedFrames.get();
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    public double getAchievedFps() {
+        double seconds = Math.max(0.001, (System.currentTimeMillis() - startTimeMillis) / 1000.0);
+        return capturedFrames.get() / seconds;
+    }
+
+    /**
+     * 单帧采集延迟的平均值；只有 PNG 模式可测量，H264 模式返回 -1
+     */
+    public double getAverageLatencyMillis() {
+        long samples = latencySamples.get();
+        if (mode != Mode.SCREENCAP_PNG) return -1;
+        return samples == 0 ? 0 : totalLatencyMillis.get() / (double) samples;
+    }
+
+    public double getAverageFrameIntervalMillis() {
+        long intervals = capturedFrames.get() - 1;
+        return intervals <= 0 ? 0 : totalIntervalMillis.get() / (double) intervals;
+    }
+
+    @NonNull
+    public String getStatsSummary() {
+        String latencyPart = mode == Mode.SCREENCAP_PNG
+                ? String.format(Locale.ROOT, "单帧延迟平均 %.1fms / 最大 %dms，",
+                getAverageLatencyMillis(), maxLatencyMillis.get())
+                : "";
+        return String.format(Locale.ROOT,
+                "%s：目标 %d FPS，实际 %.2f FPS，已采集 %d 帧，丢帧 %d，%s帧间隔平均 %.1fms / 最大 %dms，%s",
+                mode == Mode.SCREENCAP_PNG ? "screencap" : "screenrecord",
+                targetFps, getAchievedFps(), capturedFrames.get(), droppedFrames.get(), latencyPart,
+                getAverageFrameIntervalMillis(), maxIntervalMillis.get(), bufferSummary());
+    }
+
+    @NonNull
+    private synchronized String bufferSummary() {
+        return String.format(Locale.ROOT, "缓冲 %d/%d 帧、%.1f/%.1f MB", ringSize, ring.length,
+                bufferedBytes / 1024.0 / 1024.0, maxBufferBytes / 1024.0 / 1024.0);
+    }
+}
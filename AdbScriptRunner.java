@@ -0,0 +1,404 @@
+package com.AdbService;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.white.QuoteUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 脚本模式（adbService -script 文件）：
+ * - 执行前一次性解析并校验全部行，有任何错误则整体不执行，并列出所有出错行
+ * - 按 parallel 控制同时在途的行数，某行完成时由其回调直接派发下一行，不轮询、不等待整批
+ * - -c（含 -reconnect）行是屏障：等在途行全部完成后单独执行，完成后才继续派发后续行
+ * - 派发是循环而非递归：同步完成的回调（如 JVM 平台直接在当前线程回调）只登记，由正在派发的循环接着派发
+ * - stopOnError 时任一行失败即不再派发新行（已在途的行照常完成），其余行计为跳过
+ * 每行的写法与终端命令相同（可省略开头的 adbService），空行与 # 开头的注释行忽略。
+ */
+public class AdbScriptRunner {
+    // 脚本中允许的操作（每行恰好一个）
+    private static final Set<String> ACTIONS = new HashSet<>(Arrays.asList(
+            "p", "c", "e", "forward", "unforward", "install", "capture", "snapshot", "stats"));
+    // 脚本中不允许的操作
+    private static final Set<String> FORBIDDEN_ACTIONS = new HashSet<>(Arrays.asList("script", "exit", "help"));
+    // 取值须为正整数的参数
+    private static final Set<String> POSITIVE_INT_PARAMS = new HashSet<>(Arrays.asList(
+            "fps", "frames", "parallel", "seconds"));
+
+    /** 解析后的一行 */
+    static class ScriptLine {
+        final int lineNumber;
+        final String text;
+        final Map<String, String> params;
+        // 连接类操作会替换当前连接，不能与其他行并发
+        final boolean barrier;
+
+        ScriptLine(int lineNumber, String text, Map<String, String> params) {
+            this.lineNumber = lineNumber;
+            this.text = text;
+            this.params = params;
+            this.barrier = "true".equals(params.get("c"));
+        }
+    }
+
+    /** 单行执行入口（由命令处理器提供） */
+    interface LineExecutor {
+        void execute(@NonNull Map<String, String> params, @NonNull LineCallback callback);
+    }
+
+    /** 单行执行结果 */
+    interface LineCallback {
+        void onLineCompleted(boolean success, String message);
+    }
+
+    /** 结果输出：每完成一行回调一次，全部结束后回调 onFinished */
+    interface ResultSink {
+        void onLineResult(@NonNull ScriptLine line, boolean success, String message, long elapsedMillis,
+                          int completed, int total);
+
+        void onFinished(int succeeded, int failed, int skipped, long elapsedMillis, boolean stopped);
+    }
+
+    private final List<ScriptLine> lines;
+    private final int parallel;
+    private final boolean stopOnError;
+    private final LineExecutor lineExecutor;
+    private final ResultSink resultSink;
+
+    // 运行状态（this 锁保护）
+    private int nextIndex = 0;
+    private int inFlight = 0;
+    private int succeeded = 0;
+    private int failed = 0;
+    private boolean stopped = false;
+    private boolean finished = false;
+    // 屏障行在途时不派发其他行
+    private boolean barrierInFlight = false;
+    // 已有线程在派发循环中，其他调用只需返回，由该循环接着派发
+    private boolean dispatching = false;
+    private long startTime;
+
+    AdbScriptRunner(@NonNull List<ScriptLine> lines, int parallel, boolean stopOnError,
+                    @NonNull LineExecutor lineExecutor, @NonNull ResultSink resultSink) {
+        this.lines = lines;
+        this.parallel = Math.max(1, parallel);
+        this.stopOnError = stopOnError;
+        this.lineExecutor = lineExecutor;
+        this.resultSink = resultSink;
+    }
+
+    // ============== 解析与校验 ==============
+    /**
+     * 解析并校验全部行，出错信息追加到 errors（带行号）
+     */
+    @NonNull
+    static List<ScriptLine> parse(@NonNull List<String> rawLines, @NonNull List<String> errors) {
+        List<ScriptLine> scriptLines = new ArrayList<>();
+        for (int i = 0; i < rawLines.size(); i++) {
+            String text = rawLines.get(i).trim();
+            if (text.isEmpty() || text.startsWith("#")) continue;
+            int lineNumber = i + 1;
+            int errorCount = errors.size();
+            Map<String, String> params = parseLine(text, lineNumber, errors);
+            if (params != null) {
+                validate(params, lineNumber, errors);
+            }
+            if (errors.size() == errorCount) {
+                scriptLines.add(new ScriptLine(lineNumber, text, params));
+            }
+        }
+        return scriptLines;
+    }
+
+    /**
+     * 把一行拆成参数表：-key value 或 -key（值为 "true"），引号包裹的值保留引号（与终端解析一致）
+     */
+    @Nullable
+    static Map<String, String> parseLine(@NonNull String text, int lineNumber, @NonNull List<String> errors) {
+        List<String> tokens = tokenize(text);
+        if (tokens == null) {
+            errors.add("第 " + lineNumber + " 行：引号未闭合");
+            return null;
+        }
+        int index = 0;
+        if (!tokens.isEmpty() && "adbService".equalsIgnoreCase(tokens.get(0))) {
+            index = 1;
+        }
+        Map<String, String> params = new LinkedHashMap<>();
+        for (; index < tokens.size(); index++) {
+            String token = tokens.get(index);
+            if (!isFlag(token)) {
+                errors.add("第 " + lineNumber + " 行：多余的参数值 " + token);
+                return null;
+            }
+            String key = token.substring(1);
+            if (index + 1 < tokens.size() && !isFlag(tokens.get(index + 1))) {
+                params.put(key, tokens.get(++index));
+            } else {
+                params.put(key, "true");
+            }
+        }
+        return params;
+    }
+
+    // 按空白拆分，双引号内的空白不拆分，引号保留在片段中；引号未闭合时返回 null
+    @Nullable
+    private static List<String> tokenize(@NonNull String text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inQuotes = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                inQuotes = !inQuotes;
+                current.append(c);
+            } else if (Character.isWhitespace(c) && !inQuotes) {
+                if (current.length() > 0) {
+                    tokens.add(current.toString());
+                    current.setLength(0);
+                }
+            } else {
+                current.append(c);
+            }
+        }
+        if (inQuotes) return null;
+        if (current.length() > 0) {
+            tokens.add(current.toString());
+        }
+        return tokens;
+    }
+
+    private static boolean isFlag(@NonNull String token) {
+        return token.length() > 1 && token.charAt(0) == '-' && !Character.isDigit(token.charAt(1));
+    }
+
+    private static void validate(@NonNull Map<String, String> params, int lineNumber, @NonNull List<String> errors) {
+        String prefix = "第 " + lineNumber + " 行：";
+        String action = null;
+        for (String key : params.keySet()) {
+            if (FORBIDDEN_ACTIONS.contains(key)) {
+                errors.add(prefix + "脚本中不支持 -" + key);
+                return;
+            }
+            if (ACTIONS.contains(key)) {
+                if (action != null) {
+                    errors.add(prefix + "每行只能包含一个操作（-" + action + " 与 -" + key + "）");
+                    return;
+                }
+                action = key;
+            }
+        }
+        if (action == null) {
+            errors.add(prefix + "缺少操作参数（如 -e、-c、-install）");
+            return;
+        }
+        if (!"true".equals(params.get(action))) {
+            errors.add(prefix + "-" + action + " 后不应跟参数值：" + params.get(action));
+            return;
+        }
+
+        for (String key : POSITIVE_INT_PARAMS) {
+            String value = params.get(key);
+            if (value != null && !isPositiveInt(value)) {
+                errors.add(prefix + "-" + key + " 应为正整数：" + value);
+            }
+        }
+
+        String host = params.get("host");
+        switch (action) {
+            case "p":
+                if (host != null && !AdbServiceCommandHandler.IP_PATTERN.matcher(host.trim()).matches()) {
+                    errors.add(prefix + "无效的 host：" + host);
+                }
+                // 配对端口每次开启配对都会变化，没有默认值，执行时缺少会被拒绝
+                if (params.get("port") == null) {
+                    errors.add(prefix + "配对需要 -port（配对端口）");
+                } else if (!isValidPort(params.get("port"))) {
+                    errors.add(prefix + "无效的 port：" + params.get("port"));
+                }
+                String code = params.get("code");
+                if (code == null || !AdbServiceCommandHandler.PAIR_CODE_PATTERN.matcher(code.trim()).matches()) {
+                    errors.add(prefix + "配对码应为6位数字");
+                }
+                break;
+            case "c":
+                if (host != null && !AdbServiceCommandHandler.IP_PATTERN.matcher(host.trim()).matches()) {
+                    errors.add(prefix + "无效的 host：" + host);
+                }
+                for (String key : new String[]{"port", "start", "end"}) {
+                    if (params.get(key) != null && !isValidPort(params.get(key))) {
+                        errors.add(prefix + "无效的 " + key + "：" + params.get(key));
+                    }
+                }
+                break;
+            case "e":
+                String command = QuoteUtils.unwrapStrict(params.get("command"));
+                if (command == null || command.trim().isEmpty()) {
+                    errors.add(prefix + "-command 不存在或为空");
+                } else if (containsNestedQuotes(command)) {
+                    errors.add(prefix + "命令包含非法嵌套/未闭合双引号");
+                }
+                break;
+            case "forward":
+                if (!isValidPort(params.get("local"))) {
+                    errors.add(prefix + "无效的 -local 端口：" + params.get("local"));
+                }
+                if (!AdbPortForwarder.isValidRemoteService(QuoteUtils.unwrapStrict(params.get("remote")))) {
+                    errors.add(prefix + "无效的 -remote，应为 tcp:端口 或 localabstract:名称");
+                }
+                break;
+            case "unforward":
+                if (!isValidPort(params.get("local"))) {
+                    errors.add(prefix + "无效的 -local 端口：" + params.get("local"));
+                }
+                break;
+            case "install":
+                String apk = QuoteUtils.unwrapStrict(params.get("apk"));
+                if (apk == null || apk.trim().isEmpty()) {
+                    errors.add(prefix + "-apk 不存在或为空");
+                }
+                String devices = params.get("devices");
+                if (devices != null) {
+                    for (String device : devices.split(",")) {
+                        if (!device.trim().isEmpty() && !AdbServiceCommandHandler.isValidDeviceAddress(device.trim())) {
+                            errors.add(prefix + "无效的设备地址：" + device.trim());
+                        }
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static boolean isPositiveInt(@NonNull String value) {
+        try {
+            return Integer.parseInt(value.trim()) > 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean isValidPort(@Nullable String value) {
+        if (value == null) return false;
+        try {
+            int port = Integer.parseInt(value.trim());
+            return port >= 1 && port <= 65535;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // 与执行时的校验规则一致：奇数个引号或出现连续引号视为嵌套/未闭合
+    private static boolean containsNestedQuotes(@NonNull String command) {
+        int quoteCount = 0;
+        for (int i = 0; i < command.length(); i++) {
+            if (command.charAt(i) == '"') quoteCount++;
+        }
+        return quoteCount % 2 != 0 || command.contains("\"\"");
+    }
+
+    // ============== 执行 ==============
+    void start() {
+        synchronized (this) {
+            startTime = System.currentTimeMillis();
+        }
+        if (lines.isEmpty()) {
+            finish();
+            return;
+        }
+        dispatchNext();
+    }
+
+    // 补足在途行数；由启动与每行完成回调触发。循环直到没有可派发的行，
+    // 期间同步完成的行只在 onLineCompleted 中更新计数，不会再嵌套进入派发
+    private void dispatchNext() {
+        synchronized (this) {
+            if (dispatching) return;
+            dispatching = true;
+        }
+        while (true) {
+            List<ScriptLine> toStart = new ArrayList<>();
+            synchronized (this) {
+                while (!stopped && !barrierInFlight && inFlight < parallel && nextIndex < lines.size()) {
+                    ScriptLine line = lines.get(nextIndex);
+                    if (line.barrier) {
+                        if (inFlight > 0) break;
+                        barrierInFlight = true;
+                    }
+                    toStart.add(line);
+                    nextIndex++;
+                    inFlight++;
+                }
+                if (toStart.isEmpty()) {
+                    dispatching = false;
+                    return;
+                }
+            }
+            for (ScriptLine line : toStart) {
+                runLine(line);
+            }
+        }
+    }
+
+    private void runLine(@NonNull ScriptLine line) {
+        final long lineStart = System.currentTimeMillis();
+        // 每行只统计一次，防止处理分支重复回调
+        final AtomicBoolean completed = new AtomicBoolean(false);
+        lineExecutor.execute(new LinkedHashMap<>(line.params), (success, message) -> {
+            if (!completed.compareAndSet(false, true)) return;
+            onLineCompleted(line, success, message, System.currentTimeMillis() - lineStart);
+        });
+    }
+
+    private void onLineCompleted(@NonNull ScriptLine line, boolean success, String message, long elapsedMillis) {
+        int completedCount;
+        boolean isDone;
+        synchronized (this) {
+            inFlight--;
+            if (line.barrier) {
+                barrierInFlight = false;
+            }
+            if (success) {
+                succeeded++;
+            } else {
+                failed++;
+                if (stopOnError) stopped = true;
+            }
+            completedCount = succeeded + failed;
+            isDone = inFlight == 0 && (stopped || nextIndex == lines.size());
+        }
+        resultSink.onLineResult(line, success, message, elapsedMillis, completedCount, lines.size());
+        if (isDone) {
+            finish();
+        } else {
+            dispatchNext();
+        }
+    }
+
+    private void finish() {
+        int finalSucceeded;
+        int finalFailed;
+        int skipped;
+        long elapsedMillis;
+        boolean finalStopped;
+        synchronized (this) {
+            if (finished) return;
+            finished = true;
+            finalSucceeded = succeeded;
+            finalFailed = failed;
+            skipped = lines.size() - nextIndex;
+            elapsedMillis = System.currentTimeMillis() - startTime;
+            finalStopped = stopped;
+        }
+        resultSink.onFinished(finalSucceeded, finalFailed, skipped, elapsedMillis, finalStopped);
+    }
+}
@@ -7,19 +7,111 @@ import com.AdbService.AdbToolSingleton;
 import com.white.ITerminal.TerminalCommandParser;
 import com.white.ITerminal.TerminalItem;
 import com.white.QuoteUtils;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 public class AdbServiceCommandHandler implements TerminalCommandParser.CommandHandler {
   private static final String SOURCE = "拓展工具";
 
+  // 预编译的校验规则（脚本模式会对每一行复用）
+  static final Pattern IP_PATTERN =
+      Pattern.compile(
+          "^((25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)\\.){3}(25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)$");
+  static final Pattern PAIR_CODE_PATTERN = Pattern.compile("^[0-9]{6}$");
+
+  private static final String HELP_TEXT =
+      "=== AdbService 命令帮助 ===\n"
+          + "功能：ADB服务连接与命令执行\n\n"
+          + "参数：\n"
+          + "  -help                 - 显示此帮助信息\n"
+          + "  -p                    - 配对设备\n"
+          + "    -host [IP地址]       - 可选：指定配对IP（默认：127.0.0.1）\n"
+          + "    -port [端口号]       - 可选：指定配对端口\n"
+          + "    -code [配对码]       - 可选：指定配对码\n"
+          + "  -c                    - 连接到ADB服务\n"
+          + "    -host [IP地址]       - 可选：指定ADB服务IP（默认：127.0.0.1）\n"
+          + "    -port [端口号]       - 可选：指定ADB服务端口（默认：5555）\n"
+          + "    -scan                - 可选：扫描端口区间自动发现无线调试端口\n"
+          + "    -start [端口号]      - 可选：扫描起始端口（默认：30000，配合-scan）\n"
+          + "    -end [端口号]        - 可选：扫描结束端口（默认：50000，配合-scan）\n"
+          + "    -reconnect           - 可选：使用上次成功的地址快速重连，并输出握手耗时\n"
+          + "  -e                    - 执行ADB命令（需配合-c参数先连接）\n"
+          + "  -command [命令字符串]  - 要执行的ADB命令（配合-e参数使用）\n"
+          + "    -v2                  - 可选：使用shell v2协议，分离stdout/stderr并按退出码判定成功（Android 7.0+）\n\n"
+          + "  -forward              - 本地端口转发到设备（需先连接）\n"
+          + "    -local [端口号]      - 本地监听端口（127.0.0.1）\n"
+          + "    -remote [目标]       - 设备端目标：tcp:端口 或 localabstract:名称\n"
+          + "  -unforward            - 取消端口转发\n"
+          + "    -local [端口号]      - 要取消的本地端口\n"
+          + "  -install              - 流式安装APK（需先连接）\n"
+          + "    -apk [路径]          - APK文件路径，多个split APK用逗号分隔\n"
+          + "    -devices [列表]      - 可选：host:port 列表（逗号分隔），默认当前连接的设备\n"
+          + "    -parallel [数量]     - 可选：同时安装的设备数上限（默认：4）\n"
+          + "  -capture              - 连续截屏（需先连接）\n"
+          + "    -fps [帧率]          - 可选：目标帧率（默认：2）\n"
+          + "    -mode [png|h264]     - 可选：png为逐帧screencap，h264为screenrecord长流（默认：png）\n"
+          + "    -frames [数量]       - 可选：环形缓冲区帧数（默认：120）\n"
+          + "    -stop                - 停止截屏并输出帧率/延迟统计\n"
+          + "    -export [目录]       - 导出缓冲区中的帧\n"
+          + "    -seconds [秒数]      - 可选：只导出最近N秒（配合-export）\n"
+          + "  -snapshot             - 并发采集诊断信息并打包为zip（需先连接）\n"
+          + "    -out [路径]          - 可选：输出文件或目录（默认：应用外部文件目录）\n"
+          + "    -parallel [数量]     - 可选：同时采集的流数上限（默认：4）\n"
+          + "  -script [文件]        - 批量执行脚本文件（每行一条命令，可省略adbService，#开头为注释）\n"
+          + "    -parallel [数量]     - 可选：同时执行的行数（默认：1，即按顺序执行）\n"
+          + "    -stoponerror         - 可选：任一行失败后不再执行后续行\n"
+          + "  -stats                - 查看运行统计（准入控制、请求合并、端口转发吞吐等）\n"
+          + "  -exit                    - 结束ADB桥服务，回收资源\n"
+          + "示例：\n"
+          + "  adbService -help                          → 显示此帮助\n"
+          + "  adbService -p -host 127.1.1.1 -port 1145 -code 114514  → 配对设备\n"
+          + "  adbService -c                             → 连接默认地址(127.0.0.1:5555)\n"
+          + "  adbService -c -host 127.1.1.1         → 连接指定IP，默认端口5555\n"
+          + "  adbService -c -port 5556                  → 连接默认IP，指定端口5556\n"
+          + "  adbService -c -host 127.1.1.1 -port 5556  → 连接指定IP和端口\n"
+          + "  adbService -c -scan                       → 扫描默认IP的30000-50000端口并连接\n"
+          + "  adbService -c -reconnect                  → 网络抖动后快速重连\n"
+          + "  adbService -e -command \"shell ls\" → 连接并执行命令\n"
+          + "  adbService -e -command \"ls /data\" -v2   → 分离输出并返回退出码\n"
+          + "  adbService -forward -local 9222 -remote localabstract:chrome_devtools_remote → 转发DevTools\n"
+          + "  adbService -unforward -local 9222          → 取消转发\n"
+          + "  adbService -capture -fps 5                 → 每秒截屏5帧\n"
+          + "  adbService -capture -export /sdcard/evidence -seconds 10 → 导出最近10秒\n"
+          + "  adbService -install -apk \"/sdcard/app.apk\" -devices 192.168.1.2:5555,192.168.1.3:5555 → 多设备安装\n"
+          + "  adbService -snapshot -out /sdcard/diag      → 采集诊断快照\n"
+          + "  adbService -script /sdcard/provision.txt -parallel 4 -stoponerror → 批量执行脚本\n\n"
+          + "注意：\n"
+          + "  1. 执行命令前需要先连接ADB服务\n"
+          + "  2. -command参数值需要引号包裹（尤其是包含空格的命令）\n"
+          + "  3. -host和-port可选，顺序任意，但必须跟在-c之后\n"
+          + "  4. 仅支持本地设备链接，不支持外部设备链接";
+
   @Override
   public void executeAsync(
       Context appContext,
       Map<String, String> params,
       TerminalCommandParser.CommandCallback callback) {
+    executeAsync(appContext, params, callback, callback);
+  }
+
+  /**
+   * @param progressCallback 中间结果（如多设备安装时每台设备的结果），callback 只接收最终结果；
+   *     终端直接执行时两者相同，脚本模式下只有最终结果结束该行
+   */
+  private void executeAsync(
+      Context appContext,
+      Map<String, String> params,
+      TerminalCommandParser.CommandCallback callback,
+      TerminalCommandParser.CommandCallback progressCallback) {
 
     // 1. 初始化可动态修改的标签列表（修复Arrays.asList的add异常）
     List<String> tagList = new ArrayList<>();
@@ -39,38 +131,9 @@ public class AdbServiceCommandHandler implements TerminalCommandParser.CommandHa
     boolean showHelp = "true".equalsIgnoreCase(params.getOrDefault("help", "false"));
     if (showHelp) {
       tagList.add("帮助");
-      String helpMsg =
-          "=== AdbService 命令帮助 ===\n"
-              + "功能：ADB服务连接与命令执行\n\n"
-              + "参数：\n"
-              + "  -help                 - 显示此帮助信息\n"
-              + "  -p                    - 配对设备\n"
-              + "    -host [IP地址]       - 可选：指定配对IP（默认：127.0.0.1）\n"
-              + "    -port [端口号]       - 可选：指定配对端口\n"
-              + "    -code [配对码]       - 可选：指定配对码\n"
-              + "  -c                    - 连接到ADB服务\n"
-              + "    -host [IP地址]       - 可选：指定ADB服务IP（默认：127.0.0.1）\n"
-              + "    -port [端口号]       - 可选：指定ADB服务端口（默认：5555）\n"
-              + "  -e                    - 执行ADB命令（需配合-c参数先连接）\n"
-              + "  -command [命令字符串]  - 要执行的ADB命令（配合-e参数使用）\n\n"
-              + "  -exit                    - 结束ADB桥服务，回收资源\n"
-              + "示例：\n"
-              + "  adbService -help                          → 显示此帮助\n"
-              + "  adbService -p -host 127.1.1.1 -port 1145 -code 114514  → 配对设备\n"
-              + "  adbService -c                             → 连接默认地址(127.0.0.1:5555)\n"
-              + "  adbService -c -host 127.1.1.1         → 连接指定IP，默认端口5555\n"
-              + "  adbService -c -port 5556                  → 连接默认IP，指定端口5556\n"
-              + "  adbService -c -host 127.1.1.1 -port 5556  → 连接指定IP和端口\n"
-              + "  adbService -e -command \"shell ls\" → 连接并执行命令\n\n"
-              + "注意：\n"
-              + "  1. 执行命令前需要先连接ADB服务\n"
-              + "  2. -command参数值需要引号包裹（尤其是包含空格的命令）\n"
-              + "  3. -host和-port可选，顺序任意，但必须跟在-c之后\n"
-              + "  4. 仅支持本地设备链接，不支持外部设备链接";
-
       callback.onSuccess(
           new TerminalCommandParser.ParseResult(
-              true, helpMsg, TerminalItem.STATUS_SUCCESS, tagList, SOURCE));
+              true, HELP_TEXT, TerminalItem.STATUS_SUCCESS, tagList, SOURCE));
       return;
     }
 
@@ -142,7 +205,7 @@ public class AdbServiceCommandHandler implements TerminalCommandParser.CommandHa
 
       String finalCode = pairCode.trim();
       // 校验配对码格式（6位数字，根据实际情况调整正则）
-      if (!finalCode.matches("^[0-9]{6}$")) {
+      if (!PAIR_CODE_PATTERN.matcher(finalCode).matches()) {
         callback.onSuccess(
             new TerminalCommandParser.ParseResult(
                 false,
@@ -159,7 +222,7 @@ public class AdbServiceCommandHandler implements TerminalCommandParser.CommandHa
 
       final String finalHost = pairHost;
 
-      AdbToolSingleton.getInstance(appContext)
+      AdbToolSingleton.getInstance(AndroidAdbPlatform.get(appContext))
           .pairAdb(
               finalHost,
               port,
@@ -203,6 +266,95 @@ public class AdbServiceCommandHandler implements TerminalCommandParser.CommandHa
         host = "127.0.0.1";
       }
 
+      // 处理 -reconnect：使用上次成功连接的地址快速重连
+      boolean reconnect = "true".equalsIgnoreCase(params.getOrDefault("reconnect", "false"));
+      if (reconnect) {
+        tagList.add("重连");
+        AdbToolSingleton adbTool = AdbToolSingleton.getInstance(AndroidAdbPlatform.get(appContext));
+        adbTool.reconnectAdb(
+            new AdbToolSingleton.AdbConnectCallback() {
+              @Override
+              public void onConnectSuccess() {
+                AdbHandshakeProfiler.Timings timings = adbTool.getHandshakeProfiler().getLatest();
+                callback.onSuccess(
+                    new TerminalCommandParser.ParseResult(
+                        true,
+                        "ADB重连成功" + (timings == null ? "" : "：" + timings.getSummary()),
+                        TerminalItem.STATUS_SUCCESS,
+                        tagList,
+                        SOURCE));
+              }
+
+              @Override
+              public void onConnectFailed(String errorMsg) {
+                callback.onSuccess(
+                    new TerminalCommandParser.ParseResult(
+                        false, "ADB重连失败：" + errorMsg, TerminalItem.STATUS_FAILED, tagList, SOURCE));
+              }
+            });
+        return;
+      }
+
+      // 处理 -scan：无线调试端口不固定时，扫描端口区间自动发现
+      boolean scan = "true".equalsIgnoreCase(params.getOrDefault("scan", "false"));
+      if (scan) {
+        tagList.add("扫描");
+        if (!isValidIpAddress(host)) {
+          callback.onSuccess(
+              new TerminalCommandParser.ParseResult(
+                  false,
+                  "无效的 host 格式: " + host + "，应为有效的IP地址",
+                  TerminalItem.STATUS_FAILED,
+                  tagList,
+                  SOURCE));
+          return;
+        }
+
+        int startPort = parsePortOrDefault(params.get("start"), AdbPortScanner.DEFAULT_START_PORT);
+        int endPort = parsePortOrDefault(params.get("end"), AdbPortScanner.DEFAULT_END_PORT);
+        if (startPort < 1 || endPort > 65535 || startPort > endPort) {
+          callback.onSuccess(
+              new TerminalCommandParser.ParseResult(
+                  false,
+                  "无效的扫描区间: " + startPort + "-" + endPort + "，端口号应在 1-65535 之间且 start 不大于 end",
+                  TerminalItem.STATUS_FAILED,
+                  tagList,
+                  SOURCE));
+          return;
+        }
+
+        final String scanHost = host;
+        AdbToolSingleton.getInstance(AndroidAdbPlatform.get(appContext))
+            .scanAndConnectAdb(
+                scanHost,
+                startPort,
+                endPort,
+                new AdbToolSingleton.AdbScanConnectCallback() {
+                  @Override
+                  public void onConnectSuccess(int port, long scanMillis) {
+                    callback.onSuccess(
+                        new TerminalCommandParser.ParseResult(
+                            true,
+                            "ADB连接成功: " + scanHost + ":" + port + "（扫描耗时 " + scanMillis + " 毫秒）",
+                            TerminalItem.STATUS_SUCCESS,
+                            tagList,
+                            SOURCE));
+                  }
+
+                  @Override
+                  public void onConnectFailed(String errorMsg) {
+                    callback.onSuccess(
+                        new TerminalCommandParser.ParseResult(
+                            false,
+                            "ADB连接失败：" + errorMsg,
+                            TerminalItem.STATUS_FAILED,
+                            tagList,
+                            SOURCE));
+                  }
+                });
+        return;
+      }
+
       // 处理 port：默认为 5555
       int port = 5555;
       if (portStr != null && !portStr.trim().isEmpty()) {
@@ -213,7 +365,7 @@ public class AdbServiceCommandHandler implements TerminalCommandParser.CommandHa
         }
       }
 
-      AdbToolSingleton.getInstance(appContext)
+      AdbToolSingleton.getInstance(AndroidAdbPlatform.get(appContext))
           .connectAdb(
               host,
               port,
@@ -253,7 +405,43 @@ public class AdbServiceCommandHandler implements TerminalCommandParser.CommandHa
         return;
       }
 
-      AdbToolSingleton adbTool = AdbToolSingleton.getInstance(appContext);
+      AdbToolSingleton adbTool = AdbToolSingleton.getInstance(AndroidAdbPlatform.get(appContext));
+
+      // shell v2：stdout / stderr / 退出码分离，按退出码判定成功与否
+      if ("true".equalsIgnoreCase(params.getOrDefault("v2", "false"))) {
+        adbTool.executeShellV2(command, new AdbToolSingleton.AdbShellCallback() {
+              @Override
+              public void onShellCompleted(AdbShellProtocolV2.ShellResult result) {
+                StringBuilder output = new StringBuilder(result.stdout);
+                if (!result.stderr.isEmpty()) {
+                  if (output.length() > 0) output.append("\n");
+                  output.append("[stderr]\n").append(result.stderr);
+                }
+                if (output.length() > 0) output.append("\n");
+                output.append("[退出码 ").append(result.exitCode).append("，耗时 ")
+                    .append(result.elapsedMillis).append("ms]");
+                callback.onSuccess(
+                      new TerminalCommandParser.ParseResult(
+                          result.isSuccess(),
+                          output.toString(),
+                          result.isSuccess() ? TerminalItem.STATUS_SUCCESS : TerminalItem.STATUS_FAILED,
+                          tagList,
+                          SOURCE));
+              }
+
+              @Override
+              public void onShellFailed(String errorMsg) {
+                callback.onSuccess(
+                      new TerminalCommandParser.ParseResult(
+                          false,
+                          "ADB执行失败：" + errorMsg,
+                          TerminalItem.STATUS_FAILED,
+                          tagList,
+                          SOURCE));
+              }
+          });
+        return;
+      }
 
       // 执行ADB命令
       adbTool.executeNonInteractive(command, new AdbToolSingleton.AdbNonInteractiveCallback() {
@@ -281,11 +469,370 @@ public class AdbServiceCommandHandler implements TerminalCommandParser.CommandHa
       return; // 执行命令后直接返回
     }
     
+    // 5. 端口转发（-forward / -unforward）
+    boolean forward = "true".equalsIgnoreCase(params.getOrDefault("forward", "false"));
+    boolean unforward = "true".equalsIgnoreCase(params.getOrDefault("unforward", "false"));
+    if (forward || unforward) {
+      tagList.add("端口转发");
+      String localPortStr = params.get("local");
+      int localPort = parsePortOrDefault(localPortStr, -1);
+      if (localPort < 1 || localPort > 65535) {
+        callback.onSuccess(
+            new TerminalCommandParser.ParseResult(
+                false,
+                "无效的 local 端口: " + localPortStr + "，端口号应在 1-65535 之间",
+                TerminalItem.STATUS_FAILED,
+                tagList,
+                SOURCE));
+        return;
+      }
+
+      AdbToolSingleton adbTool = AdbToolSingleton.getInstance(AndroidAdbPlatform.get(appContext));
+      if (unforward) {
+        AdbPortForwarder forwarder = adbTool.stopPortForward(localPort);
+        if (forwarder == null) {
+          callback.onSuccess(
+              new TerminalCommandParser.ParseResult(
+                  false, "本地端口 " + localPort + " 没有端口转发", TerminalItem.STATUS_FAILED, tagList, SOURCE));
+        } else {
+          callback.onSuccess(
+              new TerminalCommandParser.ParseResult(
+                  true,
+                  "已取消端口转发：" + forwarder.getStatsSummary(),
+                  TerminalItem.STATUS_SUCCESS,
+                  tagList,
+                  SOURCE));
+        }
+        return;
+      }
+
+      String remote = QuoteUtils.unwrapStrict(params.get("remote"));
+      if (!AdbPortForwarder.isValidRemoteService(remote)) {
+        callback.onSuccess(
+            new TerminalCommandParser.ParseResult(
+                false,
+                "无效的 remote 格式: " + remote + "，应为 tcp:端口 或 localabstract:名称",
+                TerminalItem.STATUS_FAILED,
+                tagList,
+                SOURCE));
+        return;
+      }
+
+      adbTool.startPortForward(
+          localPort,
+          remote,
+          new AdbToolSingleton.AdbForwardCallback() {
+            @Override
+            public void onForwardStarted(int localPort, String remoteService) {
+              callback.onSuccess(
+                  new TerminalCommandParser.ParseResult(
+                      true,
+                      "端口转发已建立: 127.0.0.1:" + localPort + " → " + remoteService,
+                      TerminalItem.STATUS_SUCCESS,
+                      tagList,
+                      SOURCE));
+            }
+
+            @Override
+            public void onForwardFailed(String errorMsg) {
+              callback.onSuccess(
+                  new TerminalCommandParser.ParseResult(
+                      false, "端口转发失败：" + errorMsg, TerminalItem.STATUS_FAILED, tagList, SOURCE));
+            }
+          });
+      return;
+    }
+
+    // 5. 流式安装APK（-install）
+    boolean install = "true".equalsIgnoreCase(params.getOrDefault("install", "false"));
+    if (install) {
+      tagList.add("安装");
+      String apkParam = QuoteUtils.unwrapStrict(params.get("apk"));
+      if (apkParam == null || apkParam.trim().isEmpty()) {
+        callback.onSuccess(
+            new TerminalCommandParser.ParseResult(
+                false, "错误：-apk 参数不存在 或 不得为空", TerminalItem.STATUS_FAILED, tagList, SOURCE));
+        return;
+      }
+      List<File> apkFiles = new ArrayList<>();
+      for (String apkPath : apkParam.split(",")) {
+        if (!apkPath.trim().isEmpty()) {
+          apkFiles.add(new File(apkPath.trim()));
+        }
+      }
+
+      AdbToolSingleton adbTool = AdbToolSingleton.getInstance(AndroidAdbPlatform.get(appContext));
+      AdbToolSingleton.AdbInstallCallback installCallback =
+          new AdbToolSingleton.AdbInstallCallback() {
+            @Override
+            public void onDeviceInstalled(AdbApkInstaller.InstallResult result) {
+              // 每台设备完成即输出，不必等最慢的设备
+              progressCallback.onSuccess(
+                  new TerminalCommandParser.ParseResult(
+                      result.success,
+                      result.getSummary(),
+                      result.success ? TerminalItem.STATUS_SUCCESS : TerminalItem.STATUS_FAILED,
+                      tagList,
+                      SOURCE));
+            }
+
+            @Override
+            public void onInstallFinished(List<AdbApkInstaller.InstallResult> results) {
+              int successCount = 0;
+              for (AdbApkInstaller.InstallResult result : results) {
+                if (result.success) successCount++;
+              }
+              boolean allSuccess = !results.isEmpty() && successCount == results.size();
+              callback.onSuccess(
+                  new TerminalCommandParser.ParseResult(
+                      allSuccess,
+                      "APK安装完成：成功 "
+                          + successCount
+                          + " 台，失败 "
+                          + (results.size() - successCount)
+                          + " 台",
+                      allSuccess ? TerminalItem.STATUS_SUCCESS : TerminalItem.STATUS_FAILED,
+                      tagList,
+                      SOURCE));
+            }
+          };
+
+      String devicesParam = params.get("devices");
+      if (devicesParam == null || devicesParam.trim().isEmpty()) {
+        adbTool.installApk(apkFiles, installCallback);
+      } else {
+        List<String> devices = new ArrayList<>();
+        for (String device : devicesParam.split(",")) {
+          if (device.trim().isEmpty()) continue;
+          if (!isValidDeviceAddress(device.trim())) {
+            callback.onSuccess(
+                new TerminalCommandParser.ParseResult(
+                    false,
+                    "无效的设备地址: " + device.trim() + "，应为 IP:端口（端口 1-65535）",
+                    TerminalItem.STATUS_FAILED,
+                    tagList,
+                    SOURCE));
+            return;
+          }
+          devices.add(device.trim());
+        }
+        int parallel = 4;
+        String parallelStr = params.get("parallel");
+        if (parallelStr != null && !parallelStr.trim().isEmpty()) {
+          try {
+            parallel = Math.max(1, Integer.parseInt(parallelStr.trim()));
+          } catch (NumberFormatException e) {
+            // 解析失败时保持默认并发数
+          }
+        }
+        adbTool.installApkOnDevices(devices, apkFiles, parallel, installCallback);
+      }
+      return;
+    }
+
+    // 5. 连续截屏（-capture）
+    boolean capture = "true".equalsIgnoreCase(params.getOrDefault("capture", "false"));
+    if (capture) {
+      tagList.add("截屏");
+      AdbToolSingleton adbTool = AdbToolSingleton.getInstance(AndroidAdbPlatform.get(appContext));
+
+      // 5.1 停止
+      if ("true".equalsIgnoreCase(params.getOrDefault("stop", "false"))) {
+        AdbScreenCapture stopped = adbTool.stopScreenCapture();
+        callback.onSuccess(
+            stopped == null
+                ? new TerminalCommandParser.ParseResult(
+                    false, "当前没有运行中的截屏任务", TerminalItem.STATUS_FAILED, tagList, SOURCE)
+                : new TerminalCommandParser.ParseResult(
+                    true, "截屏已停止：" + stopped.getStatsSummary(), TerminalItem.STATUS_SUCCESS, tagList, SOURCE));
+        return;
+      }
+
+      // 5.2 导出
+      String exportDir = QuoteUtils.unwrapStrict(params.get("export"));
+      if (exportDir != null && !exportDir.trim().isEmpty()) {
+        AdbScreenCapture current = adbTool.getScreenCapture();
+        if (current == null) {
+          callback.onSuccess(
+              new TerminalCommandParser.ParseResult(
+                  false, "没有可导出的截屏数据，请先执行 -capture", TerminalItem.STATUS_FAILED, tagList, SOURCE));
+          return;
+        }
+        long toMillis = System.currentTimeMillis();
+        long fromMillis = 0;
+        String secondsStr = params.get("seconds");
+        if (secondsStr != null && !secondsStr.trim().isEmpty()) {
+          try {
+            fromMillis = toMillis - Long.parseLong(secondsStr.trim()) * 1000L;
+          } catch (NumberFormatException e) {
+            // 解析失败时导出全部缓冲帧
+          }
+        }
+        // 写文件在工作线程执行，结果回到主线程
+        final String finalExportDir = exportDir.trim();
+        adbTool.exportScreenCapture(
+            fromMillis,
+            toMillis,
+            new File(finalExportDir),
+            new AdbToolSingleton.AdbCaptureExportCallback() {
+              @Override
+              public void onExportCompleted(int frameCount, AdbScreenCapture capture) {
+                callback.onSuccess(
+                    new TerminalCommandParser.ParseResult(
+                        true,
+                        "已导出 " + frameCount + " 帧到 " + finalExportDir + "\n" + capture.getStatsSummary(),
+                        TerminalItem.STATUS_SUCCESS,
+                        tagList,
+                        SOURCE));
+              }
+
+              @Override
+              public void onExportFailed(String errorMsg) {
+                callback.onSuccess(
+                    new TerminalCommandParser.ParseResult(
+                        false, "导出失败：" + errorMsg, TerminalItem.STATUS_FAILED, tagList, SOURCE));
+              }
+            });
+        return;
+      }
+
+      // 5.3 启动
+      int fps = 2;
+      int frames = 120;
+      try {
+        if (params.get("fps") != null) fps = Math.max(1, Integer.parseInt(params.get("fps").trim()));
+        if (params.get("frames") != null) frames = Math.max(1, Integer.parseInt(params.get("frames").trim()));
+      } catch (NumberFormatException e) {
+        callback.onSuccess(
+            new TerminalCommandParser.ParseResult(
+                false, "无效的 fps / frames 参数，应为正整数", TerminalItem.STATUS_FAILED, tagList, SOURCE));
+        return;
+      }
+      AdbScreenCapture.Mode mode =
+          "h264".equalsIgnoreCase(params.getOrDefault("mode", "png"))
+              ? AdbScreenCapture.Mode.SCREENRECORD_H264
+              : AdbScreenCapture.Mode.SCREENCAP_PNG;
+      AdbScreenCapture started = adbTool.startScreenCapture(mode, fps, frames);
+      callback.onSuccess(
+          started == null
+              ? new TerminalCommandParser.ParseResult(
+                  false, "请先连接 ADB 再截屏", TerminalItem.STATUS_FAILED, tagList, SOURCE)
+              : new TerminalCommandParser.ParseResult(
+                  true,
+                  "截屏已启动：目标 " + fps + " FPS，缓冲 " + frames + " 帧，使用 -capture -stop 停止",
+                  TerminalItem.STATUS_SUCCESS,
+                  tagList,
+                  SOURCE));
+      return;
+    }
+
+    // 5. 诊断快照（-snapshot）
+    boolean snapshot = "true".equalsIgnoreCase(params.getOrDefault("snapshot", "false"));
+    if (snapshot) {
+      tagList.add("快照");
+      String archiveName = "snapshot_" + System.currentTimeMillis() + ".zip";
+      File archiveFile;
+      String outParam = QuoteUtils.unwrapStrict(params.get("out"));
+      if (outParam != null && !outParam.trim().isEmpty()) {
+        File out = new File(outParam.trim());
+        archiveFile = out.isDirectory() || !out.getName().endsWith(".zip") ? new File(out, archiveName) : out;
+      } else {
+        File baseDir = appContext.getExternalFilesDir(null);
+        archiveFile = new File(baseDir != null ? baseDir : appContext.getFilesDir(), archiveName);
+      }
+      File parentDir = archiveFile.getParentFile();
+      if (parentDir != null && !parentDir.exists() && !parentDir.mkdirs()) {
+        callback.onSuccess(
+            new TerminalCommandParser.ParseResult(
+                false, "无法创建输出目录：" + parentDir.getPath(), TerminalItem.STATUS_FAILED, tagList, SOURCE));
+        return;
+      }
+      int parallel = 4;
+      String parallelStr = params.get("parallel");
+      if (parallelStr != null && !parallelStr.trim().isEmpty()) {
+        try {
+          parallel = Math.max(1, Integer.parseInt(parallelStr.trim()));
+        } catch (NumberFormatException e) {
+          // 解析失败时保持默认并发数
+        }
+      }
+
+      AdbToolSingleton.getInstance(AndroidAdbPlatform.get(appContext))
+          .collectSnapshot(
+              archiveFile,
+              null,
+              parallel,
+              new AdbToolSingleton.AdbSnapshotCallback() {
+                @Override
+                public void onSnapshotCompleted(AdbSnapshotCollector.SnapshotResult result) {
+                  callback.onSuccess(
+                      new TerminalCommandParser.ParseResult(
+                          true, result.getSummary(), TerminalItem.STATUS_SUCCESS, tagList, SOURCE));
+                }
+
+                @Override
+                public void onSnapshotFailed(String errorMsg) {
+                  callback.onSuccess(
+                      new TerminalCommandParser.ParseResult(
+                          false, "快照失败：" + errorMsg, TerminalItem.STATUS_FAILED, tagList, SOURCE));
+                }
+              });
+      return;
+    }
+
+    // 5. 查看运行统计（-stats）
+    boolean stats = "true".equalsIgnoreCase(params.getOrDefault("stats", "false"));
+    if (stats) {
+      tagList.add("统计");
+      AdbToolSingleton adbTool = AdbToolSingleton.getInstance(AndroidAdbPlatform.get(appContext));
+      StringBuilder statsMsg = new StringBuilder();
+      statsMsg
+          .append(adbTool.getAdmissionController().getStatsSummary())
+          .append("\n请求合并：实际执行 ")
+          .append(adbTool.getRequestCoalescer().getExecutionCount())
+          .append(" 次，合并节省 ")
+          .append(adbTool.getRequestCoalescer().getCoalescedCount())
+          .append(" 次")
+          .append("\n")
+          .append(adbTool.getHandshakeProfiler().getStatsSummary());
+      for (AdbPortForwarder forwarder : adbTool.getPortForwards()) {
+        statsMsg.append("\n端口转发 ").append(forwarder.getStatsSummary());
+      }
+      AdbScreenCapture screenCapture = adbTool.getScreenCapture();
+      if (screenCapture != null && screenCapture.isRunning()) {
+        statsMsg.append("\n截屏 ").append(screenCapture.getStatsSummary());
+      }
+      callback.onSuccess(
+          new TerminalCommandParser.ParseResult(
+              true, statsMsg.toString(), TerminalItem.STATUS_SUCCESS, tagList, SOURCE));
+      return;
+    }
+
+    // 5. 脚本模式（-script）：先整体校验，再按并发数执行，逐行输出结果
+    if (params.containsKey("script")) {
+      tagList.add("脚本");
+      String scriptPath = QuoteUtils.unwrapStrict(params.get("script"));
+      if (scriptPath == null || scriptPath.trim().isEmpty() || "true".equals(scriptPath)) {
+        callback.onSuccess(
+            new TerminalCommandParser.ParseResult(
+                false, "错误：-script 需要指定脚本文件路径", TerminalItem.STATUS_FAILED, tagList, SOURCE));
+        return;
+      }
+      // 读文件与整体校验放到后台线程，不阻塞调用方（终端通常在主线程调用）；
+      // 校验结果与后续执行都切回主线程，回调线程与其他命令一致
+      final String finalScriptPath = scriptPath.trim();
+      new Thread(
+              () -> runScript(appContext, finalScriptPath, params, tagList, callback),
+              "ADB_Script_Loader")
+          .start();
+      return;
+    }
+
     // 5. 处理执行ADB命令参数（-exit）
     boolean exit = "true".equalsIgnoreCase(params.getOrDefault("exit", "false"));
     if(exit) {
       tagList.add("结束服务");
-      AdbToolSingleton.getInstance(appContext).disconnectAdb();
+      AdbToolSingleton.getInstance(AndroidAdbPlatform.get(appContext)).disconnectAdb();
       callback.onSuccess(
                   new TerminalCommandParser.ParseResult(
                       true, "已断开ADB服务", TerminalItem.STATUS_SUCCESS, tagList, SOURCE));
@@ -300,6 +847,129 @@ public class AdbServiceCommandHandler implements TerminalCommandParser.CommandHa
             true, helpPrompt, TerminalItem.STATUS_SUCCESS, tagList, SOURCE));
   }
 
+  // 脚本模式：读取并整体校验后交给 AdbScriptRunner 执行（在后台线程调用）。
+  // 除读文件与校验外，回调和逐行派发都经 dispatchCallback 回到主线程
+  private void runScript(
+      Context appContext,
+      String scriptPath,
+      Map<String, String> params,
+      List<String> tagList,
+      TerminalCommandParser.CommandCallback callback) {
+    AdbPlatform platform = AndroidAdbPlatform.get(appContext);
+    List<String> rawLines = new ArrayList<>();
+    try (BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(new FileInputStream(scriptPath), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        rawLines.add(line);
+      }
+    } catch (IOException e) {
+      platform.dispatchCallback(
+          () ->
+              callback.onSuccess(
+                  new TerminalCommandParser.ParseResult(
+                      false, "读取脚本失败：" + e.getMessage(), TerminalItem.STATUS_FAILED, tagList, SOURCE)));
+      return;
+    }
+
+    List<String> errors = new ArrayList<>();
+    List<AdbScriptRunner.ScriptLine> scriptLines = AdbScriptRunner.parse(rawLines, errors);
+    if (!errors.isEmpty()) {
+      StringBuilder errorMsg = new StringBuilder("脚本校验未通过（共 ").append(errors.size()).append(" 处错误），未执行任何命令：");
+      for (String error : errors) {
+        errorMsg.append("\n").append(error);
+      }
+      platform.dispatchCallback(
+          () ->
+              callback.onSuccess(
+                  new TerminalCommandParser.ParseResult(
+                      false, errorMsg.toString(), TerminalItem.STATUS_FAILED, tagList, SOURCE)));
+      return;
+    }
+
+    int parallel = 1;
+    String parallelStr = params.get("parallel");
+    if (parallelStr != null && !parallelStr.trim().isEmpty()) {
+      try {
+        parallel = Math.max(1, Integer.parseInt(parallelStr.trim()));
+      } catch (NumberFormatException e) {
+        // 解析失败时按顺序执行
+      }
+    }
+    final int finalParallel = parallel;
+    final boolean stopOnError = "true".equalsIgnoreCase(params.getOrDefault("stoponerror", "false"));
+
+    // 在主线程启动：首批行在主线程派发，之后的行由各行回调（已在主线程）继续派发
+    platform.dispatchCallback(() -> startScript(appContext, scriptLines, finalParallel, stopOnError, tagList, callback));
+  }
+
+  private void startScript(
+      Context appContext,
+      List<AdbScriptRunner.ScriptLine> scriptLines,
+      int parallel,
+      boolean stopOnError,
+      List<String> tagList,
+      TerminalCommandParser.CommandCallback callback) {
+    new AdbScriptRunner(
+            scriptLines,
+            parallel,
+            stopOnError,
+            (lineParams, lineCallback) ->
+                executeAsync(
+                    appContext,
+                    lineParams,
+                    result -> lineCallback.onLineCompleted(result.success, result.message),
+                    // 中间结果直接输出到终端，不结束该行
+                    callback),
+            new AdbScriptRunner.ResultSink() {
+              @Override
+              public void onLineResult(
+                  AdbScriptRunner.ScriptLine line,
+                  boolean success,
+                  String message,
+                  long elapsedMillis,
+                  int completed,
+                  int total) {
+                callback.onSuccess(
+                    new TerminalCommandParser.ParseResult(
+                        success,
+                        String.format(
+                            "[%d/%d] 第 %d 行%s（%dms）：%s\n%s",
+                            completed,
+                            total,
+                            line.lineNumber,
+                            success ? "成功" : "失败",
+                            elapsedMillis,
+                            line.text,
+                            message),
+                        success ? TerminalItem.STATUS_SUCCESS : TerminalItem.STATUS_FAILED,
+                        tagList,
+                        SOURCE));
+              }
+
+              @Override
+              public void onFinished(
+                  int succeeded, int failed, int skipped, long elapsedMillis, boolean stopped) {
+                boolean allSuccess = failed == 0 && skipped == 0;
+                callback.onSuccess(
+                    new TerminalCommandParser.ParseResult(
+                        allSuccess,
+                        String.format(
+                            "脚本执行结束%s：成功 %d 行，失败 %d 行，跳过 %d 行，总耗时 %dms",
+                            stopped ? "（出错后停止）" : "",
+                            succeeded,
+                            failed,
+                            skipped,
+                            elapsedMillis),
+                        allSuccess ? TerminalItem.STATUS_SUCCESS : TerminalItem.STATUS_FAILED,
+                        tagList,
+                        SOURCE));
+              }
+            })
+        .start();
+  }
+
   @Override
   public TerminalCommandParser.ParseResult execute(Context appContext, Map<String, String> params)
       throws Exception {
@@ -316,11 +986,35 @@ public class AdbServiceCommandHandler implements TerminalCommandParser.CommandHa
         SOURCE);
   }
 
+  // 辅助方法 端口解析：为空或非法时返回默认值（范围由调用方校验）
+  private int parsePortOrDefault(@Nullable String portStr, int defaultPort) {
+    if (portStr == null || portStr.trim().isEmpty()) return defaultPort;
+    try {
+      return Integer.parseInt(portStr.trim());
+    } catch (NumberFormatException e) {
+      return defaultPort;
+    }
+  }
+
+  /**
+   * 校验 host:port 形式的设备地址，host 与 -c 使用同一 IP 规则
+   */
+  static boolean isValidDeviceAddress(String device) {
+    int colon = device.lastIndexOf(':');
+    if (colon <= 0 || !IP_PATTERN.matcher(device.substring(0, colon)).matches()) {
+      return false;
+    }
+    try {
+      int port = Integer.parseInt(device.substring(colon + 1));
+      return port >= 1 && port <= 65535;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
   // 辅助方法 IP校验
   private boolean isValidIpAddress(String ip) {
     if (ip == null || ip.isEmpty()) return false;
-    String ipPattern =
-        "^((25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)\\.){3}(25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)$";
-    return ip.matches(ipPattern);
+    return IP_PATTERN.matcher(ip).matches();
   }
 }
@@ -0,0 +1,123 @@
+package com.AdbService;
+
+import androidx.annotation.NonNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * shell 协议 v2（shell,v2,raw: 服务，Android 7.0+）：设备端输出按包分帧，
+ * 每包为 1 字节 id + 4 字节小端长度 + 负载，stdout / stderr / 退出码分开传输，
+ * 客户端无需再追加 "; echo $?" 或额外执行一条命令来判断成功与否。
+ */
+public final class AdbShellProtocolV2 {
+    public static final String SERVICE_PREFIX = "shell,v2,raw:";
+
+    static final int ID_STDIN = 0;
+    static final int ID_STDOUT = 1;
+    static final int ID_STDERR = 2;
+    static final int ID_EXIT = 3;
+    static final int ID_CLOSE_STDIN = 4;
+    static final int ID_WINDOW_SIZE_CHANGE = 5;
+
+    private static final int HEADER_LENGTH = 5;
+
+    /** 结构化的命令结果 */
+    public static class ShellResult {
+        public final String stdout;
+        public final String stderr;
+        public final int exitCode;
+        public final long elapsedMillis;
+
+        ShellResult(String stdout, String stderr, int exitCode, long elapsedMillis) {
+            this.stdout = stdout;
+            this.stderr = stderr;
+            this.exitCode = exitCode;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public boolean isSuccess() {
+            return exitCode == 0;
+        }
+    }
+
+    private AdbShellProtocolV2() {
+    }
+
+    /**
+     * 发送关闭 stdin 包：非交互执行不提供输入，避免读取 stdin 的命令一直阻塞
+     */
+    public static void writeCloseStdin(@NonNull OutputStream outputStream) throws IOException {
+        outputStream.write(new byte[]{ID_CLOSE_STDIN, 0, 0, 0, 0});
+        outputStream.flush();
+    }
+
+    /**
+     * 读取包序列，stdout / stderr 负载直接写入对应缓冲区，收到退出码包即返回（不等待流关闭）
+     * @return 退出码（0~255）
+     * @throws EOFException 流在退出码包之前结束（设备不支持 v2 或连接中断）；libadb 在远端关闭后读取抛出的
+     *                      "Stream closed" 同样转换为 EOFException
+     */
+    public static int readPackets(@NonNull InputStream inputStream, @NonNull AdbOutputBuffer stdout,
+                                  @NonNull AdbOutputBuffer stderr) throws IOException {
+        try {
+            return readPacketsUntilExit(inputStream, stdout, stderr);
+        } catch (IOException e) {
+            if (e instanceof EOFException || !AdbOutputBuffer.isStreamClosed(e)) throw e;
+            EOFException eof = new EOFException("流在收到退出码之前被远端关闭");
+            eof.initCause(e);
+            throw eof;
+        }
+    }
+
+    private static int readPacketsUntilExit(@NonNull InputStream inputStream, @NonNull AdbOutputBuffer stdout,
+                                            @NonNull AdbOutputBuffer stderr) throws IOException {
+        byte[] header = new byte[HEADER_LENGTH];
+        byte[] skipBuffer = null;
+        while (true) {
+            readFully(inputStream, header, HEADER_LENGTH);
+            int id = header[0] & 0xff;
+            int length = (header[1] & 0xff) | (header[2] & 0xff) << 8 | (header[3] & 0xff) << 16 | (header[4] & 0xff) << 24;
+            if (length < 0) {
+                throw new IOException("shell v2 包长度非法：" + length);
+            }
+            switch (id) {
+                case ID_STDOUT:
+                    stdout.appendFrom(inputStream, length);
+                    break;
+                case ID_STDERR:
+                    stderr.appendFrom(inputStream, length);
+                    break;
+                case ID_EXIT:
+                    if (length < 1) {
+                        throw new IOException("shell v2 退出码包为空");
+                    }
+                    byte[] exitPayload = new byte[length];
+                    readFully(inputStream, exitPayload, length);
+                    return exitPayload[0] & 0xff;
+                default:
+                    // 其他包（设备端不应发送）按长度跳过
+                    if (skipBuffer == null) skipBuffer = new byte[4096];
+                    while (length > 0) {
+                        int chunk = Math.min(length, skipBuffer.length);
+                        readFully(inputStream, skipBuffer, chunk);
+                        length -= chunk;
+                    }
+                    break;
+            }
+        }
+    }
+
+    private static void readFully(@NonNull InputStream inputStream, @NonNull byte[] target, int count) throws IOException {
+        int offset = 0;
+        while (offset < count) {
+            int read = inputStream.read(target, offset, count - offset);
+            if (read < 0) {
+                throw new EOFException("流在收到退出码之前结束");
+            }
+            offset += read;
+        }
+    }
+}
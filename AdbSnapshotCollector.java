@@ -0,0 +1,407 @@
+package com.AdbService;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import io.github.muntashirakon.adb.AbsAdbConnectionManager;
+import io.github.muntashirakon.adb.AdbStream;
+
+/**
+ * 诊断快照：在同一连接上并发执行一组只读采集命令（受并发流上限约束），
+ * 每个采集项的输出边到达边 gzip 压缩写入独立分片，全部完成后打包成一个 zip 归档，
+ * 附带记录每项耗时/大小/结果的 manifest.json。总耗时约等于最慢的一项。
+ * zip 只能顺序写入条目，所以并发阶段先写分片，分片已压缩，打包时以 STORED 方式原样放入。
+ * 采集线程与超时调度器由调用方提供（来自平台），采集过程不阻塞调用线程：
+ * 最多 maxParallel 个采集任务轮流领取采集项，最后完成的任务负责打包并回调。
+ */
+public class AdbSnapshotCollector {
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final String MANIFEST_ENTRY_NAME = "manifest.json";
+
+    /** 采集项：名称（归档内文件名）+ 设备端命令 */
+    public static class Collector {
+        public final String name;
+        public final String command;
+
+        public Collector(@NonNull String name, @NonNull String command) {
+            this.name = name;
+            this.command = command;
+        }
+    }
+
+    /** 单个采集项的结果 */
+    public static class CollectorResult {
+        public final Collector collector;
+        public final boolean success;
+        public final String error;
+        public final long startOffsetMillis;
+        public final long durationMillis;
+        public final long rawBytes;
+        public final long compressedBytes;
+
+        CollectorResult(Collector collector, boolean success, String error, long startOffsetMillis,
+                        long durationMillis, long rawBytes, long compressedBytes) {
+            this.collector = collector;
+            this.success = success;
+            this.error = error;
+            this.startOffsetMillis = startOffsetMillis;
+            this.durationMillis = durationMillis;
+            this.rawBytes = rawBytes;
+            this.compressedBytes = compressedBytes;
+        }
+    }
+
+    /** 采集结束回调，在最后完成的采集线程上调用 */
+    public interface Listener {
+        void onCompleted(@NonNull SnapshotResult result);
+        void onFailed(@NonNull Exception error);
+    }
+
+    /** 整体结果 */
+    public static class SnapshotResult {
+        public final File archiveFile;
+        public final long totalMillis;
+        public final List<CollectorResult> collectorResults;
+
+        SnapshotResult(File archiveFile, long totalMillis, List<CollectorResult> collectorResults) {
+            this.archiveFile = archiveFile;
+            this.totalMillis = totalMillis;
+            this.collectorResults = collectorResults;
+        }
+
+        @NonNull
+        public String getSummary() {
+            long slowest = 0;
+            long sum = 0;
+            int failed = 0;
+            for (CollectorResult result : collectorResults) {
+                slowest = Math.max(slowest, result.durationMillis);
+                sum += result.durationMillis;
+                if (!result.success) failed++;
+            }
+            StringBuilder summary = new StringBuilder(String.format(Locale.ROOT,
+                    "快照已保存：%s\n总耗时 %dms（最慢一项 %dms，逐项累计 %dms），%d 项，失败 %d 项",
+                    archiveFile.getPath(), totalMillis, slowest, sum, collectorResults.size(), failed));
+            for (CollectorResult result : collectorResults) {
+                summary.append(String.format(Locale.ROOT, "\n  %-10s %6dms %9d 字节 %s", result.collector.name,
+                        result.durationMillis, result.rawBytes, result.success ? "成功" : "失败：" + result.error));
+            }
+            return summary.toString();
+        }
+    }
+
+    /**
+     * 默认采集项：常用只读诊断命令
+     */
+    @NonNull
+    public static List<Collector> defaultCollectors() {
+        List<Collector> collectors = new ArrayList<>();
+        collectors.add(new Collector("activity", "dumpsys activity"));
+        collectors.add(new Collector("meminfo", "dumpsys meminfo"));
+        collectors.add(new Collector("getprop", "getprop"));
+        collectors.add(new Collector("logcat", "logcat -d"));
+        collectors.add(new Collector("ps", "ps -A"));
+        collectors.add(new Collector("df", "df"));
+        return collectors;
+    }
+
+    private final AbsAdbConnectionManager connectionManager;
+    @Nullable
+    private final AdbAdmissionController admissionController;
+    private final List<Collector> collectors;
+    private final int maxParallel;
+    private final ExecutorService collectExecutor;
+    private final ScheduledExecutorService timeoutExecutor;
+    private long collectorTimeoutMillis = 60_000;
+    private long admissionWaitMillis = 10_000;
+
+    /**
+     * @param maxParallel     同时执行的采集项上限（与 collectExecutor 的线程数无关）
+     * @param collectExecutor 执行采集与打包的线程池
+     * @param timeoutExecutor 单项超时调度
+     */
+    public AdbSnapshotCollector(@NonNull AbsAdbConnectionManager connectionManager,
+                                @Nullable AdbAdmissionController admissionController,
+                                @NonNull List<Collector> collectors, int maxParallel,
+                                @NonNull ExecutorService collectExecutor,
+                                @NonNull ScheduledExecutorService timeoutExecutor) {
+        this.connectionManager = connectionManager;
+        this.admissionController = admissionController;
+        this.collectors = new ArrayList<>(collectors);
+        this.maxParallel = Math.max(1, maxParallel);
+        this.collectExecutor = collectExecutor;
+        this.timeoutExecutor = timeoutExecutor;
+    }
+
+    public void setCollectorTimeoutMillis(long collectorTimeoutMillis) {
+        if (collectorTimeoutMillis > 0) {
+            this.collectorTimeoutMillis = collectorTimeoutMillis;
+        }
+    }
+
+    // ============== 核心：并发采集 + 打包 ==============
+    /**
+     * 开始采集并写入 archiveFile，立即返回；结果通过 listener 回调
+     */
+    public void collect(@NonNull File archiveFile, @NonNull Listener listener) {
+        final long startTime = System.currentTimeMillis();
+        final File partDir = new File(archiveFile.getParentFile(), archiveFile.getName() + ".parts");
+        if (!partDir.exists() && !partDir.mkdirs()) {
+            listener.onFailed(new IOException("无法创建临时目录：" + partDir.getPath()));
+            return;
+        }
+
+        final int count = collectors.size();
+        final File[] partFiles = new File[count];
+        final long[] partChecksums = new long[count];
+        final CollectorResult[] results = new CollectorResult[count];
+        for (int i = 0; i < count; i++) {
+            partFiles[i] = new File(partDir, i + "_" + collectors.get(i).name + ".txt.gz");
+        }
+        if (count == 0) {
+            finish(archiveFile, partDir, partFiles, partChecksums, results, startTime, listener);
+            return;
+        }
+
+        // 每个任务循环领取下一个采集项，同时在跑的采集项不超过 maxParallel
+        final AtomicInteger nextIndex = new AtomicInteger();
+        final AtomicInteger remaining = new AtomicInteger(count);
+        Runnable worker = () -> {
+            int i;
+            while ((i = nextIndex.getAndIncrement()) < count) {
+                results[i] = runCollector(collectors.get(i), partFiles[i], partChecksums, i, startTime);
+                if (remaining.decrementAndGet() == 0) {
+                    finish(archiveFile, partDir, partFiles, partChecksums, results, startTime, listener);
+                }
+            }
+        };
+        int submitted = 0;
+        try {
+            for (; submitted < Math.min(maxParallel, count); submitted++) {
+                collectExecutor.execute(worker);
+            }
+        } catch (RuntimeException e) {
+            // 线程池拒绝：已提交的任务会领取完全部采集项（只是并发变低）；一个都没提交时直接失败
+            if (submitted == 0) {
+                deleteParts(partDir, partFiles);
+                listener.onFailed(e);
+            }
+        }
+    }
+
+    // 全部采集项完成后打包并清理分片
+    private void finish(@NonNull File archiveFile, @NonNull File partDir, @NonNull File[] partFiles,
+                        @NonNull long[] partChecksums, @NonNull CollectorResult[] results, long startTime,
+                        @NonNull Listener listener) {
+        List<CollectorResult> resultList = new ArrayList<>();
+        for (CollectorResult result : results) {
+            resultList.add(result);
+        }
+        try {
+            writeArchive(archiveFile, partFiles, partChecksums, resultList, System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            listener.onFailed(e);
+            return;
+        } finally {
+            deleteParts(partDir, partFiles);
+        }
+        listener.onCompleted(new SnapshotResult(archiveFile, System.currentTimeMillis() - startTime,
+                Collections.unmodifiableList(resultList)));
+    }
+
+    private static void deleteParts(@NonNull File partDir, @NonNull File[] partFiles) {
+        for (File partFile : partFiles) {
+            partFile.delete();
+        }
+        partDir.delete();
+    }
+
+    /**
+     * 执行单个采集项：输出边读边压缩写入分片文件，同时计算分片 CRC（打包 STORED 条目需要）
+     */
+    @NonNull
+    private CollectorResult runCollector(@NonNull Collector collector, @NonNull File partFile, @NonNull long[] checksums,
+                                         int index, long snapshotStart) {
+        long start = System.currentTimeMillis();
+        long rawBytes = 0;
+        boolean admitted = false;
+        AdbStream stream = null;
+        AtomicBoolean isTimeout = new AtomicBoolean(false);
+        ScheduledFuture<?> timeoutFuture = null;
+        CRC32 crc = new CRC32();
+        try (CheckedOutputStream checked = new CheckedOutputStream(
+                new BufferedOutputStream(new FileOutputStream(partFile), CHUNK_SIZE), crc);
+             GZIPOutputStream gzip = new GZIPOutputStream(checked, CHUNK_SIZE)) {
+            if (admissionController != null) {
+                admitted = admissionController.tryAcquire(admissionWaitMillis);
+                if (!admitted) {
+                    throw new IOException("设备繁忙，未获得执行名额");
+                }
+            }
+            long openStart = System.currentTimeMillis();
+            try {
+                stream = connectionManager.openStream("exec:" + collector.command);
+            } catch (Exception e) {
+                if (admissionController != null) {
+                    admissionController.recordOpenResult(false, System.currentTimeMillis() - openStart);
+                }
+                throw e;
+            }
+            boolean opened = stream != null && !stream.isClosed();
+            if (admissionController != null) {
+                admissionController.recordOpenResult(opened, System.currentTimeMillis() - openStart);
+            }
+            if (!opened) {
+                throw new IOException("无法打开 ADB 流");
+            }
+
+            final AdbStream timeoutStream = stream;
+            timeoutFuture = timeoutExecutor.schedule(() -> {
+                isTimeout.set(true);
+                try {
+                    timeoutStream.close();
+                } catch (IOException ignored) {
+                }
+            }, collectorTimeoutMillis, TimeUnit.MILLISECONDS);
+
+            InputStream inputStream = stream.openInputStream();
+            byte[] chunk = new byte[CHUNK_SIZE];
+            int read;
+            try {
+                while ((read = inputStream.read(chunk, 0, chunk.length)) >= 0) {
+                    gzip.write(chunk, 0, read);
+                    rawBytes += read;
+                }
+            } catch (IOException e) {
+                // 超时关闭，或 libadb 在远端关闭后读取抛出的 Stream closed（正常结束）
+                if (!isTimeout.get() && !AdbOutputBuffer.isStreamClosed(e)) throw e;
+            }
+            gzip.finish();
+            checked.flush();
+            checksums[index] = crc.getValue();
+
+            long duration = System.currentTimeMillis() - start;
+            return new CollectorResult(collector, !isTimeout.get(),
+                    isTimeout.get() ? "超时，已保留部分输出" : null,
+                    start - snapshotStart, duration, rawBytes, partFile.length());
+        } catch (Exception e) {
+            checksums[index] = -1;
+            return new CollectorResult(collector, false, e.getMessage() == null ? "未知错误" : e.getMessage(),
+                    start - snapshotStart, System.currentTimeMillis() - start, rawBytes, 0);
+        } finally {
+            if (timeoutFuture != null) {
+                timeoutFuture.cancel(false);
+            }
+            if (stream != null && !stream.isClosed()) {
+                try {
+                    stream.close();
+                } catch (IOException ignored) {
+                }
+            }
+            if (admitted) {
+                admissionController.release();
+            }
+        }
+    }
+
+    // 打包：分片以 STORED 方式放入（已是 gzip），manifest 以 DEFLATED 方式写入
+    private void writeArchive(@NonNull File archiveFile, @NonNull File[] partFiles, @NonNull long[] partChecksums,
+                              @NonNull List<CollectorResult> results, long collectMillis) throws IOException {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(archiveFile), CHUNK_SIZE))) {
+            for (int i = 0; i < partFiles.length; i++) {
+                File partFile = partFiles[i];
+                long crc = partChecksums[i];
+                if (crc < 0 || !partFile.exists()) continue;
+
+                ZipEntry entry = new ZipEntry(results.get(i).collector.name + ".txt.gz");
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(partFile.length());
+                entry.setCompressedSize(partFile.length());
+                entry.setCrc(crc);
+                zip.putNextEntry(entry);
+                try (InputStream is = new FileInputStream(partFile)) {
+                    int read;
+                    while ((read = is.read(chunk)) >= 0) {
+                        zip.write(chunk, 0, read);
+                    }
+                }
+                zip.closeEntry();
+            }
+
+            zip.putNextEntry(new ZipEntry(MANIFEST_ENTRY_NAME));
+            zip.write(buildManifest(results, collectMillis).getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+    }
+
+    @NonNull
+    private static String buildManifest(@NonNull List<CollectorResult> results, long collectMillis) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"createdAt\": ").append(System.currentTimeMillis())
+                .append(",\n  \"collectMillis\": ").append(collectMillis)
+                .append(",\n  \"collectors\": [");
+        for (int i = 0; i < results.size(); i++) {
+            CollectorResult result = results.get(i);
+            json.append(i == 0 ? "\n" : ",\n")
+                    .append("    {\"name\": ").append(quote(result.collector.name))
+                    .append(", \"command\": ").append(quote(result.collector.command))
+                    .append(", \"entry\": ").append(result.compressedBytes > 0 ? quote(result.collector.name + ".txt.gz") : "null")
+                    .append(", \"success\": ").append(result.success)
+                    .append(", \"error\": ").append(result.error == null ? "null" : quote(result.error))
+                    .append(", \"startOffsetMillis\": ").append(result.startOffsetMillis)
+                    .append(", \"durationMillis\": ").append(result.durationMillis)
+                    .append(", \"rawBytes\": ").append(result.rawBytes)
+                    .append(", \"compressedBytes\": ").append(result.compressedBytes)
+                    .append('}');
+        }
+        json.append("\n  ]\n}\n");
+        return json.toString();
+    }
+
+    @NonNull
+    private static String quote(@NonNull String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': quoted.append("\\\""); break;
+                case '\\': quoted.append("\\\\"); break;
+                case '\n': quoted.append("\\n"); break;
+                case '\r': quoted.append("\\r"); break;
+                case '\t': quoted.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -1,25 +1,23 @@
 package com.AdbService;
 
-import android.content.Context;
-import android.os.Build;
-import android.os.Handler;
-import android.os.Looper;
-
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import io.github.muntashirakon.adb.AbsAdbConnectionManager;
 import io.github.muntashirakon.adb.AdbStream;
@@ -28,21 +26,60 @@ import io.github.muntashirakon.adb.AdbStream;
 public class AdbToolSingleton {
     // 单例实例
     private static volatile AdbToolSingleton INSTANCE;
-    // 主线程 Handler：用于将回调切换到主线程（方便更新 UI）
-    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // 平台：回调分发、存储、设备信息、线程池（Android 为 AndroidAdbPlatform）
+    private final AdbPlatform platform;
     // ADB 连接管理器
     private AbsAdbConnectionManager adbConnectionManager;
     // 连接状态标记（volatile 保证多线程可见性），默认未连接
     private volatile boolean isAdbConnected = false;
-    // 固定线程池：支持并行处理连接/配对/命令执行
-    private final ExecutorService executorService = Executors.newFixedThreadPool(3);
-    // 超时监控定时线程池：全局复用
-    private final ScheduledExecutorService timeoutExecutor = Executors.newSingleThreadScheduledExecutor();
-    // 超时任务句柄：用于控制当前命令的超时监控
-    private ScheduledFuture<?> timeoutFuture;
-
-    // 全局超时配置（默认10秒，可自定义）
+    // 工作线程池（由平台创建，Android 为固定线程池）：支持并行处理连接/配对/命令执行
+    // 线程数 = 准入并发上限 + 预留：命令可以占满全部并发名额，等待准入的命令也不会挤占连接/配对等任务
+    private static final int RESERVED_WORKER_COUNT = 2;
+    private static final int WORKER_THREAD_COUNT =
+            AdbAdmissionController.DEFAULT_MAX_CONCURRENT_STREAMS + RESERVED_WORKER_COUNT;
+    private final ExecutorService executorService;
+    // 超时监控定时线程池（由平台创建）：本实例内全局复用
+    private final ScheduledExecutorService timeoutExecutor;
+
+    // 全局超时配置（默认10秒，可自定义；启用自适应超时后作为样本不足时的兜底值）
     private int defaultTimeoutSeconds = 10;
+    // 自适应超时统计文件
+    private static final String TIMEOUT_STATS_FILE_NAME = "adb_timeout_stats.txt";
+    // 自适应超时策略：按命令签名学习耗时分布，默认启用
+    private AdbAdaptiveTimeoutPolicy adaptiveTimeoutPolicy;
+    private volatile boolean adaptiveTimeoutEnabled = true;
+
+    // 准入控制：按设备（host:port）限制并发流数与开流速率，保护 adbd
+    private final Map<String, AdbAdmissionController> admissionControllers = new ConcurrentHashMap<>();
+    // 当前连接的设备标识，连接成功后更新
+    private volatile String currentDeviceKey = "default";
+    // 等待准入的最长时间，超过则拒绝执行
+    private volatile long admissionWaitMillis = 3000;
+
+    // 输出缓冲池：容量与工作线程数一致，读路径复用缓冲区
+    private final AdbBufferPool outputBufferPool = new AdbBufferPool(WORKER_THREAD_COUNT);
+
+    // 端口转发：本地端口 -> 转发器；转发连接的 ADB 流读写是阻塞调用，使用独立的可伸缩线程池
+    private final Map<Integer, AdbPortForwarder> portForwarders = new ConcurrentHashMap<>();
+    private final ExecutorService forwardExecutor;
+
+    // 快速重连：记住最近一次成功连接的地址，记录每次握手耗时
+    private volatile String lastConnectedHost;
+    private volatile int lastConnectedPort = -1;
+    private final AdbHandshakeProfiler handshakeProfiler = new AdbHandshakeProfiler();
+    // 命令执行时发现连接失效是否自动重连（默认关闭）
+    private volatile boolean autoReconnect = false;
+    // 重连单飞：同一时刻只有一个线程断开+重连；每次连接成功代数加一，
+    // 排队的线程拿到锁后发现代数已变且连接正常，说明别人已重连完成，直接复用
+    private final ReentrantLock reconnectLock = new ReentrantLock();
+    private final AtomicLong connectionGeneration = new AtomicLong();
+    private static final int RECONNECT_PROBE_TIMEOUT_MS = 1500;
+
+    // 连续截屏流水线（同一时刻最多一个）
+    private volatile AdbScreenCapture screenCapture;
+
+    // 只读命令请求合并：相同设备+相同命令并发执行时只打开一个流
+    private final AdbRequestCoalescer<AdbNonInteractiveCallback> requestCoalescer = new AdbRequestCoalescer<>();
     // 标记是否禁用超时（用于长命令如 logcat/top，非交互式场景慎用）
     private final AtomicBoolean disableTimeout = new AtomicBoolean(false);
 
@@ -52,6 +89,54 @@ public class AdbToolSingleton {
         void onConnectFailed(String errorMsg);
     }
 
+    /**
+     * 扫描端口并连接的回调（返回实际连接的端口，便于下次直连）
+     */
+    public interface AdbScanConnectCallback {
+        void onConnectSuccess(int port, long scanMillis);
+        void onConnectFailed(String errorMsg);
+    }
+
+    /**
+     * 端口转发回调
+     */
+    public interface AdbForwardCallback {
+        void onForwardStarted(int localPort, String remoteService);
+        void onForwardFailed(String errorMsg);
+    }
+
+    /**
+     * APK 安装回调：每台设备完成时回调一次，全部完成后回调 onInstallFinished
+     */
+    public interface AdbInstallCallback {
+        void onDeviceInstalled(AdbApkInstaller.InstallResult result);
+        void onInstallFinished(List<AdbApkInstaller.InstallResult> results);
+    }
+
+    /**
+     * shell v2 命令回调：stdout / stderr / 退出码分开给出
+     */
+    public interface AdbShellCallback {
+        void onShellCompleted(AdbShellProtocolV2.ShellResult result);
+        void onShellFailed(String errorMsg);
+    }
+
+    /**
+     * 诊断快照回调
+     */
+    public interface AdbSnapshotCallback {
+        void onSnapshotCompleted(AdbSnapshotCollector.SnapshotResult result);
+        void onSnapshotFailed(String errorMsg);
+    }
+
+    /**
+     * 截屏导出回调
+     */
+    public interface AdbCaptureExportCallback {
+        void onExportCompleted(int frameCount, AdbScreenCapture capture);
+        void onExportFailed(String errorMsg);
+    }
+
     public interface AdbPairCallback {
         void onPairSuccess();
         void onPairFailed(String errorMsg);
@@ -75,26 +160,47 @@ public class AdbToolSingleton {
     }
 
     // ============== 单例构造 ==============
-    private AdbToolSingleton(@NonNull Context context) {
+    private AdbToolSingleton(@NonNull AdbPlatform platform, boolean shared) {
+        this.platform = platform;
+        executorService = platform.newExecutor(WORKER_THREAD_COUNT);
+        forwardExecutor = platform.newExecutor(0);
+        timeoutExecutor = platform.newScheduledExecutor();
         try {
-            adbConnectionManager = AdbConnectionManager.getInstance(context.getApplicationContext());
+            adbConnectionManager = shared
+                    ? AdbConnectionManager.getInstance(platform)
+                    : AdbConnectionManager.createForDevice(platform);
+            // 同一数据目录下的所有实例共用一份统计（见 AdbAdaptiveTimeoutPolicy.forFile）
+            adaptiveTimeoutPolicy = AdbAdaptiveTimeoutPolicy.forFile(
+                    new File(platform.getFilesDir(), TIMEOUT_STATS_FILE_NAME));
         } catch (Exception e) {
             e.printStackTrace();
             isAdbConnected = false;
         }
     }
 
-    public static AdbToolSingleton getInstance(@NonNull Context context) {
+    /**
+     * App 内使用：AdbToolSingleton.getInstance(AndroidAdbPlatform.get(context))
+     */
+    public static AdbToolSingleton getInstance(@NonNull AdbPlatform platform) {
         if (INSTANCE == null) {
             synchronized (AdbToolSingleton.class) {
                 if (INSTANCE == null) {
-                    INSTANCE = new AdbToolSingleton(context);
+                    INSTANCE = new AdbToolSingleton(platform, true);
                 }
             }
         }
         return INSTANCE;
     }
 
+    /**
+     * 创建独立实例（独立连接与线程池，共用平台上持久化的密钥），
+     * 用于同时驱动多台设备，例如 JVM 主机上每台设备一个实例
+     */
+    @NonNull
+    public static AdbToolSingleton create(@NonNull AdbPlatform platform) {
+        return new AdbToolSingleton(platform, false);
+    }
+
     // ============== 超时配置接口 ==============
     public void setDefaultTimeoutSeconds(int seconds) {
         if (seconds > 0) {
@@ -106,10 +212,68 @@ public class AdbToolSingleton {
         this.disableTimeout.set(disable);
     }
 
+    /**
+     * 启用/关闭自适应超时（关闭后所有命令统一使用 defaultTimeoutSeconds）
+     */
+    public void setAdaptiveTimeoutEnabled(boolean enabled) {
+        this.adaptiveTimeoutEnabled = enabled;
+    }
+
+    /**
+     * 获取自适应超时策略，用于调整分位数、安全系数、上下限等参数
+     */
+    @Nullable
+    public AdbAdaptiveTimeoutPolicy getAdaptiveTimeoutPolicy() {
+        return adaptiveTimeoutPolicy;
+    }
+
+    /**
+     * 获取当前设备的准入控制器，用于调整并发上限/开流速率或查看拒绝统计
+     */
+    @NonNull
+    public AdbAdmissionController getAdmissionController() {
+        return getAdmissionController(currentDeviceKey);
+    }
+
+    @NonNull
+    private AdbAdmissionController getAdmissionController(@NonNull String deviceKey) {
+        AdbAdmissionController controller = admissionControllers.get(deviceKey);
+        if (controller == null) {
+            AdbAdmissionController created = new AdbAdmissionController(deviceKey);
+            // 上限不超过可用于执行命令的工作线程数，否则自适应上限增长到线程数以上也没有意义
+            created.setMaxConcurrentStreams(WORKER_THREAD_COUNT - RESERVED_WORKER_COUNT);
+            controller = admissionControllers.putIfAbsent(deviceKey, created);
+            if (controller == null) {
+                controller = created;
+            }
+        }
+        return controller;
+    }
+
+    /**
+     * 设置等待准入的最长时间（毫秒），设备繁忙超过该时间的命令直接失败
+     */
+    public void setAdmissionWaitMillis(long millis) {
+        if (millis >= 0) {
+            this.admissionWaitMillis = millis;
+        }
+    }
+
+    /**
+     * 计算某条命令本次执行将使用的超时时间（毫秒）
+     */
+    public long getEffectiveTimeoutMillis(@NonNull String fullCommand) {
+        long defaultMillis = TimeUnit.SECONDS.toMillis(defaultTimeoutSeconds);
+        if (!adaptiveTimeoutEnabled || adaptiveTimeoutPolicy == null) {
+            return defaultMillis;
+        }
+        return adaptiveTimeoutPolicy.getTimeoutMillis(fullCommand, defaultMillis);
+    }
+
     // ============== ADB 配对 ==============
     public void pairAdb(@NonNull String host, int port, @NonNull String code, @NonNull AdbPairCallback callback) {
-        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.R) {
-            postCallbackToMainThread(() -> callback.onPairFailed("当前系统版本低于 Android 11，不支持 ADB 配对功能"));
+        if (!platform.isPairingSupported()) {
+            postCallbackToMainThread(() -> callback.onPairFailed("当前平台不支持 ADB 配对功能（Android 需 11 及以上）"));
             return;
         }
         if (adbConnectionManager == null) {
@@ -151,9 +315,11 @@ public class AdbToolSingleton {
 
         executorService.execute(() -> {
             try {
+                long connectStart = System.currentTimeMillis();
                 boolean connectResult = adbConnectionManager.connect(host, port);
                 if (connectResult) {
-                    isAdbConnected = true;
+                    handshakeProfiler.record(System.currentTimeMillis() - connectStart, false);
+                    onConnected(host, port);
                     postCallbackToMainThread(callback::onConnectSuccess);
                 } else {
                     isAdbConnected = false;
@@ -167,119 +333,671 @@ public class AdbToolSingleton {
         });
     }
 
+    // ============== ADB 快速重连（网络抖动后恢复连接） ==============
+    /**
+     * 使用最近一次成功连接的地址重连，记录实际 connect 耗时（见 {@link #getHandshakeProfiler()}）；
+     * 连接失败后才探测端口，用于区分端口已变化和认证未通过
+     */
+    public void reconnectAdb(@NonNull AdbConnectCallback callback) {
+        if (adbConnectionManager == null) {
+            isAdbConnected = false;
+            postCallbackToMainThread(() -> callback.onConnectFailed("ADB 连接管理器初始化失败"));
+            return;
+        }
+        if (lastConnectedHost == null) {
+            postCallbackToMainThread(() -> callback.onConnectFailed("没有可重连的地址，请先使用 connectAdb 连接一次"));
+            return;
+        }
+
+        executorService.execute(() -> {
+            try {
+                reconnectBlocking(-1);
+                postCallbackToMainThread(callback::onConnectSuccess);
+            } catch (Exception e) {
+                e.printStackTrace();
+                isAdbConnected = false;
+                postCallbackToMainThread(() -> callback.onConnectFailed("重连失败：" + (e.getMessage() == null ? "未知错误" : e.getMessage())));
+            }
+        });
+    }
+
+    /**
+     * 同步重连（在工作线程调用），失败时抛出异常；并发调用串行执行
+     * @param observedGeneration 调用方发现连接失效时看到的连接代数；拿到锁时代数已变化且已连接，
+     *                           说明其他线程已重连，不再重复断开重连。传 -1 表示总是重连
+     * @return 本次重连的耗时；复用了其他线程的重连结果时返回 null
+     */
+    @Nullable
+    private AdbHandshakeProfiler.Timings reconnectBlocking(long observedGeneration) throws Exception {
+        reconnectLock.lock();
+        try {
+            if (observedGeneration >= 0 && connectionGeneration.get() != observedGeneration && isAdbConnected) {
+                return null;
+            }
+            return reconnectLocked();
+        } finally {
+            reconnectLock.unlock();
+        }
+    }
+
+    @NonNull
+    private AdbHandshakeProfiler.Timings reconnectLocked() throws Exception {
+        final String host = lastConnectedHost;
+        final int port = lastConnectedPort;
+        if (host == null || port <= 0) {
+            throw new IllegalStateException("没有可重连的地址");
+        }
+
+        // 丢弃可能处于半开状态的旧连接
+        try {
+            adbConnectionManager.disconnect();
+        } catch (Exception ignored) {
+        }
+        long connectStart = System.currentTimeMillis();
+        boolean connected;
+        Exception connectError = null;
+        try {
+            connected = adbConnectionManager.connect(host, port);
+        } catch (Exception e) {
+            connected = false;
+            connectError = e;
+        }
+        if (!connected) {
+            // 失败后再探测，判断是端口变化还是认证问题，不在成功路径上多建一次连接
+            AdbHandshakeProfiler.ProbeResult probe = handshakeProfiler.probe(host, port, RECONNECT_PROBE_TIMEOUT_MS);
+            String reason = probe.isAdb
+                    ? "ADB 认证未通过"
+                    : "无线调试端口可能已变化，请使用 -c -scan 重新发现";
+            throw new IOException(host + ":" + port + " " + reason + "（探测：" + probe.getSummary() + "）", connectError);
+        }
+        AdbHandshakeProfiler.Timings timings = handshakeProfiler.record(System.currentTimeMillis() - connectStart, true);
+        onConnected(host, port);
+        return timings;
+    }
+
+    // 连接成功后的统一状态更新
+    private void onConnected(@NonNull String host, int port) {
+        connectionGeneration.incrementAndGet();
+        isAdbConnected = true;
+        currentDeviceKey = host + ":" + port;
+        lastConnectedHost = host;
+        lastConnectedPort = port;
+        if (adbConnectionManager instanceof AdbConnectionManager) {
+            // 在后台提前完成 RSA Provider 查找与类加载，不占用连接路径
+            forwardExecutor.execute(((AdbConnectionManager) adbConnectionManager)::warmUpRsaCipher);
+        }
+    }
+
+    /**
+     * 命令执行时发现连接失效，是否先自动快速重连再继续执行
+     */
+    public void setAutoReconnect(boolean autoReconnect) {
+        this.autoReconnect = autoReconnect;
+    }
+
+    /**
+     * 握手耗时与历史统计
+     */
+    @NonNull
+    public AdbHandshakeProfiler getHandshakeProfiler() {
+        return handshakeProfiler;
+    }
+
+    // ============== ADB 扫描端口并连接（Android 11+ 无线调试端口不固定） ==============
+    public void scanAndConnectAdb(@NonNull String host, int startPort, int endPort, @NonNull AdbScanConnectCallback callback) {
+        if (adbConnectionManager == null) {
+            isAdbConnected = false;
+            postCallbackToMainThread(() -> callback.onConnectFailed("ADB 连接管理器初始化失败"));
+            return;
+        }
+        if (startPort < 1 || endPort > 65535 || startPort > endPort) {
+            postCallbackToMainThread(() -> callback.onConnectFailed("扫描端口区间错误，必须是 1-65535 之间且起始端口不大于结束端口"));
+            return;
+        }
+
+        executorService.execute(() -> {
+            try {
+                AdbPortScanner.ScanResult scanResult = new AdbPortScanner().scan(host, startPort, endPort);
+                if (!scanResult.isFound()) {
+                    isAdbConnected = false;
+                    postCallbackToMainThread(() -> callback.onConnectFailed(
+                            String.format("在 %d-%d 区间未发现 ADB 服务（探测 %d 个端口，耗时 %d 毫秒），请确认已开启无线调试",
+                                    startPort, endPort, scanResult.probedPorts, scanResult.elapsedMillis)));
+                    return;
+                }
+
+                long connectStart = System.currentTimeMillis();
+                boolean connectResult = adbConnectionManager.connect(host, scanResult.port);
+                if (connectResult) {
+                    handshakeProfiler.record(System.currentTimeMillis() - connectStart, false);
+                    onConnected(host, scanResult.port);
+                    postCallbackToMainThread(() -> callback.onConnectSuccess(scanResult.port, scanResult.elapsedMillis));
+                } else {
+                    isAdbConnected = false;
+                    postCallbackToMainThread(() -> callback.onConnectFailed("连接拒绝：已发现端口 " + scanResult.port + "，但 ADB 认证未通过，请先完成配对"));
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                isAdbConnected = false;
+                postCallbackToMainThread(() -> callback.onConnectFailed("扫描连接异常：" + (e.getMessage() == null ? "未知错误" : e.getMessage())));
+            }
+        });
+    }
+
+    // ========== 只读命令执行（并发的相同请求合并为一次执行） ==========
+    /**
+     * @param readOnly 为 true 时，若同一设备上相同命令已在执行，则直接复用其结果，不再打开新流；
+     *                 仅用于无副作用的查询命令（如 getprop、dumpsys battery）；
+     *                 超时模式（setDisableTimeout）在入口即被消费，并参与合并键，只有超时模式相同的请求才会合并
+     */
+    public void executeNonInteractive(@NonNull String fullCommand, boolean readOnly, @NonNull AdbNonInteractiveCallback callback) {
+        final boolean isTimeoutDisabled = disableTimeout.getAndSet(false);
+        if (!readOnly) {
+            runShellCommand(fullCommand, isTimeoutDisabled, callback);
+            return;
+        }
+
+        final String coalesceKey = currentDeviceKey + "\n" + (isTimeoutDisabled ? "no-timeout" : "timeout")
+                + "\n" + fullCommand.trim();
+        if (!requestCoalescer.join(coalesceKey, callback)) {
+            return; // 已挂到在途的相同请求上
+        }
+
+        runShellCommand(fullCommand, isTimeoutDisabled, new AdbNonInteractiveCallback() {
+            @Override
+            public void onCommandCompleted(String output) {
+                for (AdbNonInteractiveCallback waiter : requestCoalescer.complete(coalesceKey)) {
+                    waiter.onCommandCompleted(output);
+                }
+            }
+
+            @Override
+            public void onCommandFailed(String errorMsg) {
+                for (AdbNonInteractiveCallback waiter : requestCoalescer.complete(coalesceKey)) {
+                    waiter.onCommandFailed(errorMsg);
+                }
+            }
+        });
+    }
+
+    /**
+     * 获取请求合并统计（getCoalescedCount 即节省的执行次数）
+     */
+    @NonNull
+    public AdbRequestCoalescer<AdbNonInteractiveCallback> getRequestCoalescer() {
+        return requestCoalescer;
+    }
+
     // ========== 核心：非交互式命令执行（修复 Lambda 变量 final 问题） ==========
     public void executeNonInteractive(@NonNull String fullCommand, @NonNull AdbNonInteractiveCallback callback) {
-        // 前置校验
+        runShellCommand(fullCommand, disableTimeout.getAndSet(false), callback);
+    }
+
+    private void runShellCommand(@NonNull String fullCommand, boolean isTimeoutDisabled,
+                                 @NonNull AdbNonInteractiveCallback callback) {
+        String trimmedFullCommand = validateCommand(fullCommand, callback::onCommandFailed);
+        if (trimmedFullCommand == null) return;
+
+        runCommandStream("shell:" + trimmedFullCommand, trimmedFullCommand, isTimeoutDisabled, (commandStream, outputBuffer) -> {
+            outputBuffer.readFrom(commandStream.openInputStream());
+            outputBuffer.normalizeLineEndings();
+            final String finalOutput = outputBuffer.toTrimmedString();
+            return () -> callback.onCommandCompleted(finalOutput);
+        }, callback::onCommandFailed);
+    }
+
+    // ========== shell 协议 v2：stdout / stderr / 退出码分离 ==========
+    /**
+     * 通过 shell,v2,raw: 服务执行命令，结果中分别给出 stdout、stderr 与退出码（设备需 Android 7.0+）
+     */
+    public void executeShellV2(@NonNull String fullCommand, @NonNull AdbShellCallback callback) {
+        final boolean isTimeoutDisabled = disableTimeout.getAndSet(false);
+        String trimmedFullCommand = validateCommand(fullCommand, callback::onShellFailed);
+        if (trimmedFullCommand == null) return;
+
+        final long startTime = System.currentTimeMillis();
+        runCommandStream(AdbShellProtocolV2.SERVICE_PREFIX + trimmedFullCommand, trimmedFullCommand, isTimeoutDisabled,
+                (commandStream, stdoutBuffer) -> {
+            AdbOutputBuffer stderrBuffer = outputBufferPool.acquire();
+            try {
+                AdbShellProtocolV2.writeCloseStdin(commandStream.openOutputStream());
+                int exitCode;
+                try {
+                    exitCode = AdbShellProtocolV2.readPackets(commandStream.openInputStream(), stdoutBuffer, stderrBuffer);
+                } catch (EOFException e) {
+                    throw new IOException("未收到退出码：设备可能不支持 shell v2（需 Android 7.0+）", e);
+                }
+                stdoutBuffer.normalizeLineEndings();
+                stderrBuffer.normalizeLineEndings();
+                final AdbShellProtocolV2.ShellResult result = new AdbShellProtocolV2.ShellResult(
+                        stdoutBuffer.toTrimmedString(), stderrBuffer.toTrimmedString(), exitCode,
+                        System.currentTimeMillis() - startTime);
+                return () -> callback.onShellCompleted(result);
+            } finally {
+                outputBufferPool.release(stderrBuffer);
+            }
+        }, callback::onShellFailed);
+    }
+
+    /** 命令流读取：在工作线程上读完整个流，返回要投递到主线程的完成回调 */
+    private interface CommandStreamReader {
+        @NonNull
+        Runnable read(@NonNull AdbStream commandStream, @NonNull AdbOutputBuffer outputBuffer) throws IOException;
+    }
+
+    /** 失败回调（各类命令回调的 onXxxFailed） */
+    private interface CommandFailureHandler {
+        void onFailed(String errorMsg);
+    }
+
+    /**
+     * 前置校验，通过时返回去掉首尾空白的命令，否则回调失败并返回 null
+     */
+    @Nullable
+    private String validateCommand(@NonNull String fullCommand, @NonNull CommandFailureHandler onFailed) {
         if (adbConnectionManager == null) {
-            postCallbackToMainThread(() -> callback.onCommandFailed("ADB 连接管理器初始化失败"));
-            return;
+            postCallbackToMainThread(() -> onFailed.onFailed("ADB 连接管理器初始化失败"));
+            return null;
         }
         if (!isAdbConnected) {
-            postCallbackToMainThread(() -> callback.onCommandFailed("请先连接 ADB 再执行命令"));
-            return;
+            postCallbackToMainThread(() -> onFailed.onFailed("请先连接 ADB 再执行命令"));
+            return null;
         }
 
         String trimmedFullCommand = fullCommand.trim();
         if (trimmedFullCommand.isEmpty()) {
-            postCallbackToMainThread(() -> callback.onCommandFailed("完整命令不能为空"));
-            return;
+            postCallbackToMainThread(() -> onFailed.onFailed("完整命令不能为空"));
+            return null;
         }
 
         if (isContainNestedQuotes(trimmedFullCommand)) {
-            postCallbackToMainThread(() -> callback.onCommandFailed("命令 [" + trimmedFullCommand + "] 包含非法嵌套/未闭合双引号，请避免"));
-            return;
+            postCallbackToMainThread(() -> onFailed.onFailed("命令 [" + trimmedFullCommand + "] 包含非法嵌套/未闭合双引号，请避免"));
+            return null;
         }
+        return trimmedFullCommand;
+    }
 
-        String fullServiceName = "shell:" + trimmedFullCommand;
-        final boolean isTimeoutDisabled = disableTimeout.get();
-        disableTimeout.set(false);
+    /**
+     * 命令流的公共执行流程：连接检查（可自动重连）→ 准入控制 → 打开流 → 超时监控 → 读取 → 记录耗时。
+     * isTimeoutDisabled 由各入口在调用时从 disableTimeout 取出并复位，保证一次设置只作用于一条命令
+     */
+    private void runCommandStream(@NonNull String fullServiceName, @NonNull String trimmedFullCommand, boolean isTimeoutDisabled,
+                                  @NonNull CommandStreamReader reader, @NonNull CommandFailureHandler onFailed) {
+        final long timeoutMillis = getEffectiveTimeoutMillis(trimmedFullCommand);
 
         executorService.execute(() -> {
             AdbStream commandStream = null;
-            // 修复点1：将 outputReader 声明为 final（赋值后不再修改，符合 Lambda 引用要求）
-            final BufferedReader[] outputReaderHolder = new BufferedReader[1]; // 用数组包装，实现「有效 final」
+            // 每条命令独立的超时句柄（并行执行时互不取消）
+            ScheduledFuture<?> commandTimeoutFuture = null;
+            AdbAdmissionController admissionController = null;
+            // 从池中取复用缓冲区，直接在工作线程上读流，无需额外的读取线程和轮询
+            AdbOutputBuffer outputBuffer = outputBufferPool.acquire();
             AtomicBoolean isTimeout = new AtomicBoolean(false);
-            // 修复点2：outputBuffer 用 AtomicReference 包装，保证多线程安全（避免 Lambda 中引用非 final 变量）
-            AtomicReference<StringBuilder> outputBufferRef = new AtomicReference<>(new StringBuilder());
+            // 完成与超时只能有一方胜出，保证回调只触发一次
             AtomicBoolean isStreamReadCompleted = new AtomicBoolean(false);
 
             try {
+                // 先记下连接代数再检查存活，并发发现失效的命令只会触发一次重连
+                final long observedGeneration = connectionGeneration.get();
                 if (isAdbConnected && !isAdbConnectionAlive()) {
                     isAdbConnected = false;
-                    postCallbackToMainThread(() -> callback.onCommandFailed("ADB 连接已失效，请重新连接"));
-                    return;
+                    boolean isReconnected = false;
+                    if (autoReconnect && lastConnectedHost != null) {
+                        try {
+                            reconnectBlocking(observedGeneration);
+                            isReconnected = true;
+                        } catch (Exception reconnectError) {
+                            reconnectError.printStackTrace();
+                        }
+                    }
+                    if (!isReconnected) {
+                        postCallbackToMainThread(() -> onFailed.onFailed("ADB 连接已失效，请重新连接"));
+                        return;
+                    }
                 }
 
-                commandStream = adbConnectionManager.openStream(fullServiceName);
-                if (commandStream == null || commandStream.isClosed()) {
-                    postCallbackToMainThread(() -> callback.onCommandFailed("无法打开非交互式 ADB 命令流"));
+                AdbAdmissionController controller = getAdmissionController();
+                if (!controller.tryAcquire(admissionWaitMillis)) {
+                    postCallbackToMainThread(() -> onFailed.onFailed(
+                            String.format("设备繁忙：当前并发流上限 %d，等待 %d 毫秒仍未获得执行名额，请稍后重试",
+                                    controller.getCurrentLimit(), admissionWaitMillis)));
                     return;
                 }
+                admissionController = controller;
 
-                InputStream inputStream = commandStream.openInputStream();
-                // 给包装数组赋值（数组本身是 final，符合要求）
-                outputReaderHolder[0] = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.ISO_8859_1));
-                final BufferedReader outputReader = outputReaderHolder[0]; // 提取为 final 变量，供 Lambda 使用
+                // 耗时从获得执行名额后开始计：排队等待不属于命令本身的耗时，计入会抬高学到的超时
+                final long startTime = System.currentTimeMillis();
+                long openStartTime = startTime;
+                try {
+                    commandStream = adbConnectionManager.openStream(fullServiceName);
+                } catch (Exception e) {
+                    admissionController.recordOpenResult(false, System.currentTimeMillis() - openStartTime);
+                    throw e;
+                }
+                boolean isStreamOpened = commandStream != null && !commandStream.isClosed();
+                admissionController.recordOpenResult(isStreamOpened, System.currentTimeMillis() - openStartTime);
+                if (!isStreamOpened) {
+                    postCallbackToMainThread(() -> onFailed.onFailed("无法打开非交互式 ADB 命令流"));
+                    return;
+                }
 
+                final AdbStream timeoutStream = commandStream;
                 if (!isTimeoutDisabled) {
-                    resetTimeoutMonitor(() -> {
-                        if (isStreamReadCompleted.get()) return;
+                    commandTimeoutFuture = scheduleTimeoutMonitor(() -> {
+                        if (!isStreamReadCompleted.compareAndSet(false, true)) return;
                         isTimeout.set(true);
-                        isStreamReadCompleted.set(true);
-                        postCallbackToMainThread(() -> callback.onCommandFailed(
-                                String.format("命令执行超时（%d秒无输出），请检查命令或网络状态", defaultTimeoutSeconds)));
-                    }, defaultTimeoutSeconds);
-                }
-
-                // 修复点3：Lambda 中引用的 outputReader 是 final 变量，编译通过
-                new Thread(() -> {
-                    try {
-                        String line;
-                        StringBuilder outputBuffer = outputBufferRef.get();
-                        while ((line = outputReader.readLine()) != null && !isStreamReadCompleted.get()) {
-                            outputBuffer.append(line).append("\n");
-                        }
-                    } catch (IOException e) {
-                        if (!isStreamReadCompleted.get() && !e.getMessage().contains("stream closed")) {
-                            e.printStackTrace();
+                        // 关闭流以解除工作线程上的阻塞读
+                        closeStreamQuietly(timeoutStream);
+                        if (adaptiveTimeoutPolicy != null) {
+                            adaptiveTimeoutPolicy.recordTimeout(trimmedFullCommand);
                         }
-                    }
-                }, "ADB_Command_Output_Reader").start();
+                        postCallbackToMainThread(() -> onFailed.onFailed(
+                                String.format("命令执行超时（%.1f秒未完成），请检查命令或网络状态", timeoutMillis / 1000.0)));
+                    }, timeoutMillis);
+                }
 
-                while (!commandStream.isClosed() && !isStreamReadCompleted.get() && !isTimeout.get()) {
-                    TimeUnit.MILLISECONDS.sleep(100);
+                Runnable completion;
+                try {
+                    completion = reader.read(commandStream, outputBuffer);
+                } catch (IOException e) {
+                    // 超时主动关流导致的读异常属于预期
+                    if (isTimeout.get()) return;
+                    throw e;
                 }
 
-                isStreamReadCompleted.set(true);
-                cancelTimeoutMonitor();
+                cancelTimeoutMonitor(commandTimeoutFuture);
+                if (!isStreamReadCompleted.compareAndSet(false, true)) return;
 
-                if (isTimeout.get()) return;
+                if (adaptiveTimeoutPolicy != null) {
+                    adaptiveTimeoutPolicy.recordLatency(trimmedFullCommand, System.currentTimeMillis() - startTime);
+                }
 
-                final String finalOutput = outputBufferRef.get().toString().trim();
-                postCallbackToMainThread(() -> callback.onCommandCompleted(finalOutput));
+                postCallbackToMainThread(completion);
 
             } catch (Exception e) {
-                cancelTimeoutMonitor();
-                isStreamReadCompleted.set(true);
+                cancelTimeoutMonitor(commandTimeoutFuture);
+                if (!isStreamReadCompleted.compareAndSet(false, true)) return;
                 e.printStackTrace();
                 String errorMsg = "命令执行异常：" + (e.getMessage() == null ? "未知错误" : e.getMessage());
-                postCallbackToMainThread(() -> callback.onCommandFailed(errorMsg));
+                postCallbackToMainThread(() -> onFailed.onFailed(errorMsg));
             } finally {
-                cancelTimeoutMonitor();
+                cancelTimeoutMonitor(commandTimeoutFuture);
                 isStreamReadCompleted.set(true);
+                closeStreamQuietly(commandStream);
+                outputBufferPool.release(outputBuffer);
+                // 流关闭后再归还并发名额
+                if (admissionController != null) {
+                    admissionController.release();
+                }
+            }
+        });
+    }
+
+    // ============== APK 流式安装 ==============
+    /**
+     * 在当前连接的设备上安装 APK（多个文件按 split APK 会话安装）
+     */
+    public void installApk(@NonNull List<File> apkFiles, @NonNull AdbInstallCallback callback) {
+        List<String> devices = new ArrayList<>();
+        devices.add(currentDeviceKey);
+        installApkOnDevices(devices, apkFiles, 1, callback);
+    }
+
+    /**
+     * 同一组 APK 并发安装到多台设备
+     * @param devices     设备列表（host:port），与当前连接相同的设备复用现有连接，其余设备临时建立独立连接
+     * @param maxParallel 同时安装的设备数上限
+     */
+    public void installApkOnDevices(@NonNull List<String> devices, @NonNull List<File> apkFiles,
+                                    int maxParallel, @NonNull AdbInstallCallback callback) {
+        if (adbConnectionManager == null) {
+            postCallbackToMainThread(() -> callback.onInstallFinished(new ArrayList<>()));
+            return;
+        }
+        if (devices.isEmpty()) {
+            postCallbackToMainThread(() -> callback.onInstallFinished(new ArrayList<>()));
+            return;
+        }
+
+        final List<String> deviceList = new ArrayList<>(devices);
+        final List<File> apkList = new ArrayList<>(apkFiles);
+        executorService.execute(() -> {
+            int parallelism = Math.max(1, Math.min(maxParallel, deviceList.size()));
+            ExecutorService installExecutor = platform.newExecutor(parallelism);
+            List<AdbApkInstaller.InstallResult> results = new ArrayList<>();
+            List<Future<AdbApkInstaller.InstallResult>> futures = new ArrayList<>();
+            for (String device : deviceList) {
+                futures.add(installExecutor.submit(() -> {
+                    AdbApkInstaller.InstallResult result = installOnDevice(device, apkList);
+                    postCallbackToMainThread(() -> callback.onDeviceInstalled(result));
+                    return result;
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (Exception e) {
+                    results.add(AdbApkInstaller.InstallResult.failed(deviceList.get(i),
+                            "安装异常：" + (e.getMessage() == null ? "未知错误" : e.getMessage())));
+                }
+            }
+            installExecutor.shutdown();
+            postCallbackToMainThread(() -> callback.onInstallFinished(results));
+        });
+    }
+
+    @NonNull
+    private AdbApkInstaller.InstallResult installOnDevice(@NonNull String device, @NonNull List<File> apkFiles) {
+        if (device.equals(currentDeviceKey)) {
+            if (!isAdbConnected) {
+                return AdbApkInstaller.InstallResult.failed(device, "请先连接 ADB 再安装");
+            }
+            return new AdbApkInstaller(adbConnectionManager, getAdmissionController(), timeoutExecutor, device)
+                    .install(apkFiles);
+        }
+
+        int colon = device.lastIndexOf(':');
+        if (colon <= 0) {
+            return AdbApkInstaller.InstallResult.failed(device, "设备格式错误，应为 host:port");
+        }
+        AdbConnectionManager deviceManager = null;
+        try {
+            String host = device.substring(0, colon);
+            int port = Integer.parseInt(device.substring(colon + 1));
+            deviceManager = AdbConnectionManager.createForDevice(platform);
+            if (!deviceManager.connect(host, port)) {
+                return AdbApkInstaller.InstallResult.failed(device, "连接拒绝：请检查设备是否已授权");
+            }
+            return new AdbApkInstaller(deviceManager, getAdmissionController(device), timeoutExecutor, device)
+                    .install(apkFiles);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return AdbApkInstaller.InstallResult.failed(device,
+                    "连接异常：" + (e.getMessage() == null ? "未知错误" : e.getMessage()));
+        } finally {
+            if (deviceManager != null) {
                 try {
-                    // 关闭包装数组中的 BufferedReader
-                    if (outputReaderHolder[0] != null) outputReaderHolder[0].close();
-                    if (commandStream != null && !commandStream.isClosed()) commandStream.close();
+                    deviceManager.close();
                 } catch (IOException e) {
-                    if (!e.getMessage().contains("stream closed")) {
-                        e.printStackTrace();
-                    }
+                    e.printStackTrace();
                 }
             }
+        }
+    }
+
+    // ============== 诊断快照 ==============
+    /**
+     * 在当前连接上并发采集诊断信息并打包到 archiveFile
+     * @param collectors  采集项，传 null 使用默认采集项
+     * @param maxParallel 同时打开的采集流上限（另受准入控制约束）
+     */
+    public void collectSnapshot(@NonNull File archiveFile, @Nullable List<AdbSnapshotCollector.Collector> collectors,
+                                int maxParallel, @NonNull AdbSnapshotCallback callback) {
+        if (adbConnectionManager == null || !isAdbConnected) {
+            postCallbackToMainThread(() -> callback.onSnapshotFailed("请先连接 ADB 再采集快照"));
+            return;
+        }
+        final List<AdbSnapshotCollector.Collector> collectorList = collectors == null || collectors.isEmpty()
+                ? AdbSnapshotCollector.defaultCollectors() : new ArrayList<>(collectors);
+        // 采集在独立线程池上进行，不占用命令工作线程；超时复用命令超时调度器
+        final ExecutorService snapshotExecutor = platform.newExecutor(Math.min(Math.max(1, maxParallel), collectorList.size()));
+        new AdbSnapshotCollector(adbConnectionManager, getAdmissionController(), collectorList, maxParallel,
+                snapshotExecutor, timeoutExecutor).collect(archiveFile, new AdbSnapshotCollector.Listener() {
+            @Override
+            public void onCompleted(@NonNull AdbSnapshotCollector.SnapshotResult result) {
+                snapshotExecutor.shutdown();
+                postCallbackToMainThread(() -> callback.onSnapshotCompleted(result));
+            }
+
+            @Override
+            public void onFailed(@NonNull Exception error) {
+                snapshotExecutor.shutdown();
+                error.printStackTrace();
+                postCallbackToMainThread(() -> callback.onSnapshotFailed(
+                        "快照采集异常：" + (error.getMessage() == null ? "未知错误" : error.getMessage())));
+            }
+        });
+    }
+
+    // ============== 连续截屏 ==============
+    /**
+     * 启动连续截屏（已有截屏任务时先停止旧任务），缓冲区字节上限取默认值
+     * @param fps          目标帧率
+     * @param ringCapacity 环形缓冲区帧数
+     * @return 截屏流水线；未连接 ADB 时返回 null
+     */
+    @Nullable
+    public AdbScreenCapture startScreenCapture(@NonNull AdbScreenCapture.Mode mode, int fps, int ringCapacity) {
+        return startScreenCapture(mode, fps, ringCapacity, AdbScreenCapture.DEFAULT_MAX_BUFFER_BYTES);
+    }
+
+    /**
+     * @param maxBufferBytes 环形缓冲区字节上限，帧数与字节数任一超限都淘汰最旧的帧
+     */
+    @Nullable
+    public synchronized AdbScreenCapture startScreenCapture(@NonNull AdbScreenCapture.Mode mode, int fps,
+                                                            int ringCapacity, long maxBufferBytes) {
+        if (adbConnectionManager == null || !isAdbConnected) {
+            return null;
+        }
+        stopScreenCapture();
+        // PNG 单帧流与录屏长流都走准入控制；PNG 设备繁忙时丢帧，录屏稍后重试
+        AdbScreenCapture capture = new AdbScreenCapture(adbConnectionManager, getAdmissionController(),
+                mode, fps, ringCapacity, maxBufferBytes);
+        capture.start();
+        screenCapture = capture;
+        return capture;
+    }
+
+    /**
+     * 停止连续截屏
+     * @return 被停止的截屏流水线（缓冲区中的帧仍可导出），没有运行中的任务时返回 null
+     */
+    @Nullable
+    public synchronized AdbScreenCapture stopScreenCapture() {
+        AdbScreenCapture capture = screenCapture;
+        if (capture != null) {
+            capture.stop();
+        }
+        return capture;
+    }
+
+    /**
+     * 在工作线程上把当前（或最近一次）截屏缓冲区中时间窗口内的帧写到 outputDir，结果回调到主线程
+     */
+    public void exportScreenCapture(long fromMillis, long toMillis, @NonNull File outputDir,
+                                    @NonNull AdbCaptureExportCallback callback) {
+        final AdbScreenCapture capture = getScreenCapture();
+        if (capture == null) {
+            postCallbackToMainThread(() -> callback.onExportFailed("没有可导出的截屏数据，请先开始截屏"));
+            return;
+        }
+        executorService.execute(() -> {
+            try {
+                int exported = capture.exportWindow(fromMillis, toMillis, outputDir);
+                postCallbackToMainThread(() -> callback.onExportCompleted(exported, capture));
+            } catch (Exception e) {
+                e.printStackTrace();
+                postCallbackToMainThread(() -> callback.onExportFailed(
+                        e.getMessage() == null ? "未知错误" : e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * 当前（或最近一次）截屏流水线
+     */
+    @Nullable
+    public AdbScreenCapture getScreenCapture() {
+        return screenCapture;
+    }
+
+    // ============== 端口转发（本地端口 -> 设备 tcp:端口 / localabstract:名称） ==============
+    public void startPortForward(int localPort, @NonNull String remoteService, @NonNull AdbForwardCallback callback) {
+        if (adbConnectionManager == null) {
+            postCallbackToMainThread(() -> callback.onForwardFailed("ADB 连接管理器初始化失败"));
+            return;
+        }
+        if (!isAdbConnected) {
+            postCallbackToMainThread(() -> callback.onForwardFailed("请先连接 ADB 再建立端口转发"));
+            return;
+        }
+        if (localPort <= 0 || localPort > 65535) {
+            postCallbackToMainThread(() -> callback.onForwardFailed("本地端口格式错误，必须是 1-65535 之间的整数"));
+            return;
+        }
+        if (!AdbPortForwarder.isValidRemoteService(remoteService)) {
+            postCallbackToMainThread(() -> callback.onForwardFailed("远端格式错误，应为 tcp:端口 或 localabstract:名称"));
+            return;
+        }
+
+        AdbPortForwarder forwarder = new AdbPortForwarder(adbConnectionManager, getAdmissionController(),
+                localPort, remoteService, forwardExecutor);
+        if (portForwarders.putIfAbsent(localPort, forwarder) != null) {
+            postCallbackToMainThread(() -> callback.onForwardFailed("本地端口 " + localPort + " 已存在转发，请先取消"));
+            return;
+        }
+
+        executorService.execute(() -> {
+            try {
+                forwarder.start();
+                postCallbackToMainThread(() -> callback.onForwardStarted(localPort, remoteService));
+            } catch (Exception e) {
+                e.printStackTrace();
+                portForwarders.remove(localPort, forwarder);
+                String errorMsg = "端口转发启动失败：" + (e.getMessage() == null ? "未知错误" : e.getMessage());
+                postCallbackToMainThread(() -> callback.onForwardFailed(errorMsg));
+            }
         });
     }
 
+    /**
+     * 取消端口转发
+     * @return 被取消的转发器（可读取最终统计），不存在时返回 null
+     */
+    @Nullable
+    public AdbPortForwarder stopPortForward(int localPort) {
+        AdbPortForwarder forwarder = portForwarders.remove(localPort);
+        if (forwarder != null) {
+            forwarder.close();
+        }
+        return forwarder;
+    }
+
+    /**
+     * 当前所有端口转发（含吞吐统计）
+     */
+    @NonNull
+    public List<AdbPortForwarder> getPortForwards() {
+        return new ArrayList<>(portForwarders.values());
+    }
+
+    private void stopAllPortForwards() {
+        for (Integer localPort : new ArrayList<>(portForwarders.keySet())) {
+            stopPortForward(localPort);
+        }
+    }
+
     /**
      * 辅助校验：判断命令是否包含嵌套/未闭合双引号
      */
@@ -323,15 +1041,22 @@ public class AdbToolSingleton {
         }
     }
 
-    private void resetTimeoutMonitor(Runnable timeoutAction, int seconds) {
-        if (disableTimeout.get()) {
-            return;
+    private void closeStreamQuietly(@Nullable AdbStream stream) {
+        if (stream == null || stream.isClosed()) return;
+        try {
+            stream.close();
+        } catch (IOException e) {
+            if (e.getMessage() == null || !e.getMessage().contains("stream closed")) {
+                e.printStackTrace();
+            }
         }
-        cancelTimeoutMonitor();
-        timeoutFuture = timeoutExecutor.schedule(timeoutAction, seconds, TimeUnit.SECONDS);
     }
 
-    private void cancelTimeoutMonitor() {
+    private ScheduledFuture<?> scheduleTimeoutMonitor(Runnable timeoutAction, long millis) {
+        return timeoutExecutor.schedule(timeoutAction, millis, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelTimeoutMonitor(@Nullable ScheduledFuture<?> timeoutFuture) {
         if (timeoutFuture != null && !timeoutFuture.isCancelled()) {
             timeoutFuture.cancel(false);
         }
@@ -341,6 +1066,8 @@ public class AdbToolSingleton {
      * 断开 ADB 连接
      */
     public void disconnectAdb() {
+        stopAllPortForwards();
+        stopScreenCapture();
         if (adbConnectionManager != null && isAdbConnected) {
             executorService.execute(() -> {
                 try {
@@ -358,21 +1085,25 @@ public class AdbToolSingleton {
      * 销毁资源
      */
     public void destroy() {
+        if (adaptiveTimeoutPolicy != null) {
+            adaptiveTimeoutPolicy.save();
+        }
         if (!executorService.isShutdown()) {
             executorService.shutdownNow();
         }
         if (!timeoutExecutor.isShutdown()) {
             timeoutExecutor.shutdownNow();
         }
+        stopAllPortForwards();
+        stopScreenCapture();
+        if (!forwardExecutor.isShutdown()) {
+            forwardExecutor.shutdownNow();
+        }
         adbConnectionManager = null;
         isAdbConnected = false;
     }
 
     private void postCallbackToMainThread(@NonNull Runnable runnable) {
-        if (Looper.myLooper() == Looper.getMainLooper()) {
-            runnable.run();
-        } else {
-            mainHandler.post(runnable);
-        }
+        platform.dispatchCallback(runnable);
     }
 }
\ No newline at end of file
@@ -0,0 +1,121 @@
+package com.AdbService;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Base64;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Android 平台适配：回调切回主线程，密钥/证书沿用 filesDir 下的 Base64 文件格式（与旧版本兼容）
+ */
+public class AndroidAdbPlatform implements AdbPlatform {
+    private static volatile AndroidAdbPlatform INSTANCE;
+
+    // 主线程 Handler：用于将回调切换到主线程（方便更新 UI）
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Context appContext;
+
+    public static AndroidAdbPlatform get(@NonNull Context context) {
+        if (INSTANCE == null) {
+            synchronized (AndroidAdbPlatform.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new AndroidAdbPlatform(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private AndroidAdbPlatform(@NonNull Context appContext) {
+        this.appContext = appContext;
+    }
+
+    @Override
+    public void dispatchCallback(@NonNull Runnable callback) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            callback.run();
+        } else {
+            mainHandler.post(callback);
+        }
+    }
+
+    @NonNull
+    @Override
+    public File getFilesDir() {
+        return appContext.getFilesDir();
+    }
+
+    @Nullable
+    @Override
+    public byte[] readKeyBlob(@NonNull String name) throws IOException {
+        File blobFile = new File(appContext.getFilesDir(), name);
+        if (!blobFile.exists()) return null;
+
+        byte[] fileBytes = new byte[(int) blobFile.length()];
+        try (InputStream is = new FileInputStream(blobFile)) {
+            int offset = 0;
+            int read;
+            while (offset < fileBytes.length && (read = is.read(fileBytes, offset, fileBytes.length - offset)) > 0) {
+                offset += read;
+            }
+        }
+        try {
+            return Base64.decode(new String(fileBytes, StandardCharsets.UTF_8), Base64.DEFAULT);
+        } catch (IllegalArgumentException e) {
+            // 兼容旧格式，直接使用原始字节
+            return fileBytes;
+        }
+    }
+
+    @Override
+    public void writeKeyBlob(@NonNull String name, @NonNull byte[] data) throws IOException {
+        File blobFile = new File(appContext.getFilesDir(), name);
+        String base64Data = Base64.encodeToString(data, Base64.DEFAULT);
+        try (OutputStream os = new FileOutputStream(blobFile)) {
+            os.write(base64Data.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public int getApiLevel() {
+        return Build.VERSION.SDK_INT;
+    }
+
+    @NonNull
+    @Override
+    public String getDeviceModel() {
+        return Build.MODEL;
+    }
+
+    @Override
+    public boolean isPairingSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R;
+    }
+
+    @NonNull
+    @Override
+    public ExecutorService newExecutor(int maxThreads) {
+        return maxThreads > 0 ? Executors.newFixedThreadPool(maxThreads) : Executors.newCachedThreadPool();
+    }
+
+    @NonNull
+    @Override
+    public ScheduledExecutorService newScheduledExecutor() {
+        return Executors.newSingleThreadScheduledExecutor();
+    }
+}
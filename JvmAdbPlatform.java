@@ -0,0 +1,155 @@
+package com.AdbService;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * 普通 JVM 平台（Linux 主机压测 / 批量管理设备）：
+ * - 没有主线程，回调直接在工作线程上执行，调用方的回调须线程安全
+ * - 密钥/证书存放在 dataDir 下，文件格式与 Android 端一致（Base64），可直接拷贝复用已授权的密钥
+ * - JDK 21+ 上工作线程池使用虚拟线程（每任务一个），数百台设备的阻塞读写不再受平台线程数限制；
+ *   低版本 JDK 回退到普通线程池
+ * 注意：仍需 libadb-android 与 androidx.annotation 的 jar 形式依赖，本仓库未提供纯 Java 构建，
+ * libadb 在非 Android 环境下的可用性与虚拟线程路径尚未实际运行验证
+ */
+public class JvmAdbPlatform implements AdbPlatform {
+    // libadb 按 API 级别选择协议特性，JVM 主机上取一个较新的值
+    public static final int DEFAULT_API_LEVEL = 33;
+
+    // JDK 21 的 Executors.newVirtualThreadPerTaskExecutor()，通过反射获取以便在 Java 8 目标下编译
+    @Nullable
+    private static final Method VIRTUAL_THREAD_EXECUTOR_FACTORY = findVirtualThreadExecutorFactory();
+
+    private final File dataDir;
+    private final int apiLevel;
+    private final String deviceModel;
+
+    public JvmAdbPlatform(@NonNull File dataDir) {
+        this(dataDir, DEFAULT_API_LEVEL, resolveHostName());
+    }
+
+    public JvmAdbPlatform(@NonNull File dataDir, int apiLevel, @NonNull String deviceModel) {
+        this.dataDir = dataDir;
+        this.apiLevel = apiLevel;
+        this.deviceModel = deviceModel;
+        if (!dataDir.exists() && !dataDir.mkdirs()) {
+            throw new IllegalStateException("无法创建数据目录：" + dataDir.getPath());
+        }
+    }
+
+    /**
+     * 当前 JVM 是否支持虚拟线程
+     */
+    public static boolean isVirtualThreadSupported() {
+        return VIRTUAL_THREAD_EXECUTOR_FACTORY != null;
+    }
+
+    @Override
+    public void dispatchCallback(@NonNull Runnable callback) {
+        callback.run();
+    }
+
+    @NonNull
+    @Override
+    public File getFilesDir() {
+        return dataDir;
+    }
+
+    @Nullable
+    @Override
+    public byte[] readKeyBlob(@NonNull String name) throws IOException {
+        File blobFile = new File(dataDir, name);
+        if (!blobFile.exists()) return null;
+
+        byte[] fileBytes = Files.readAllBytes(blobFile.toPath());
+        try {
+            return Base64.getMimeDecoder().decode(fileBytes);
+        } catch (IllegalArgumentException e) {
+            return fileBytes;
+        }
+    }
+
+    @Override
+    public void writeKeyBlob(@NonNull String name, @NonNull byte[] data) throws IOException {
+        // 与 android.util.Base64.DEFAULT 一致：每 76 字符换行，末尾带换行
+        String base64Data = Base64.getMimeEncoder(76, new byte[]{'\n'}).encodeToString(data) + "\n";
+        File tmpFile = new File(dataDir, name + ".tmp");
+        try (OutputStream os = Files.newOutputStream(tmpFile.toPath())) {
+            os.write(base64Data.getBytes(StandardCharsets.UTF_8));
+        }
+        Files.move(tmpFile.toPath(), new File(dataDir, name).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public int getApiLevel() {
+        return apiLevel;
+    }
+
+    @NonNull
+    @Override
+    public String getDeviceModel() {
+        return deviceModel;
+    }
+
+    @Override
+    public boolean isPairingSupported() {
+        // 配对依赖 libadb 在 Android 上的 TLS 实现，JVM 主机上请先在设备端完成授权
+        return false;
+    }
+
+    @NonNull
+    @Override
+    public ExecutorService newExecutor(int maxThreads) {
+        if (VIRTUAL_THREAD_EXECUTOR_FACTORY != null) {
+            try {
+                // 虚拟线程足够廉价，忽略线程数上限，并发由准入控制按设备约束
+                return (ExecutorService) VIRTUAL_THREAD_EXECUTOR_FACTORY.invoke(null);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return maxThreads > 0 ? Executors.newFixedThreadPool(maxThreads) : Executors.newCachedThreadPool();
+    }
+
+    @NonNull
+    @Override
+    public ScheduledExecutorService newScheduledExecutor() {
+        // 调度线程设为守护线程，忘记 destroy() 时不阻止 JVM 退出
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ADB_Scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Nullable
+    private static Method findVirtualThreadExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    @NonNull
+    private static String resolveHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "jvm";
+        }
+    }
+}
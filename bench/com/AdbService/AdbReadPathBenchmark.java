@@ -0,0 +1,93 @@
+package com.AdbService;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 读路径分配率基准（在 JVM 主机上运行，依赖 HotSpot 的线程分配计数）：
+ * 对比旧路径（BufferedReader + 每行 String + StringBuilder + trim）与池化缓冲路径
+ * 每条命令分配的字节数。位于 bench/ 目录，不属于发布源码，不会打进 APK。
+ * 用法（与主源码一起编译，classpath 需包含 androidx.annotation）：
+ * javac -d out AdbOutputBuffer.java AdbBufferPool.java bench/com/AdbService/AdbReadPathBenchmark.java
+ * java -cp out com.AdbService.AdbReadPathBenchmark [输出行数] [迭代次数]
+ */
+public class AdbReadPathBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        byte[] output = buildSampleOutput(lines);
+
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        AdbBufferPool pool = new AdbBufferPool(1);
+
+        // 预热，让 JIT 与缓冲池进入稳态
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += legacyRead(output).length();
+            sink += pooledRead(output, pool).length();
+        }
+
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += legacyRead(output).length();
+        }
+        long legacyNanos = System.nanoTime() - startNanos;
+        long legacyBytes = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        before = threadMXBean.getThreadAllocatedBytes(threadId);
+        startNanos = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += pooledRead(output, pool).length();
+        }
+        long pooledNanos = System.nanoTime() - startNanos;
+        long pooledBytes = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        System.out.printf("输出大小：%d 字节（%d 行），迭代 %d 次%n", output.length, lines, iterations);
+        System.out.printf("旧路径  ：%,d 字节/命令，%.1f 微秒/命令%n",
+                legacyBytes / iterations, legacyNanos / 1000.0 / iterations);
+        System.out.printf("池化路径：%,d 字节/命令，%.1f 微秒/命令%n",
+                pooledBytes / iterations, pooledNanos / 1000.0 / iterations);
+        System.out.println("(校验值 " + sink + ")");
+    }
+
+    // 原 executeNonInteractive 的读取方式
+    private static String legacyRead(byte[] output) throws IOException {
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(output), StandardCharsets.ISO_8859_1));
+        StringBuilder outputBuffer = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            outputBuffer.append(line).append("\n");
+        }
+        return outputBuffer.toString().trim();
+    }
+
+    private static String pooledRead(byte[] output, AdbBufferPool pool) throws IOException {
+        AdbOutputBuffer buffer = pool.acquire();
+        try {
+            buffer.readFrom(new ByteArrayInputStream(output));
+            buffer.normalizeLineEndings();
+            return buffer.toTrimmedString();
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    // 模拟 dumpsys 类输出（PTY 下为 \r\n 换行）
+    private static byte[] buildSampleOutput(int lines) {
+        StringBuilder sample = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            sample.append("  Package [com.example.app").append(i)
+                    .append("] (").append(Integer.toHexString(i * 7919)).append("):\r\n");
+        }
+        return sample.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+}